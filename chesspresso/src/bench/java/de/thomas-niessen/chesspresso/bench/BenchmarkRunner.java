@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.bench;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A small benchmark runner in the spirit of JMH. Each benchmark is an operation
+ * which is executed repeatedly for a fixed time per iteration; the score is the
+ * mean throughput over the measurement iterations, the error is the half width
+ * of the 99.9% confidence interval. Warm-up iterations are run before and are
+ * not reported.
+ * <p>
+ * The results can be written as text, or in JMH's CSV or JSON layout, so that
+ * the usual tools for comparing JMH results can be used.
+ *
+ * @author Thomas Niessen
+ */
+public final class BenchmarkRunner {
+
+	/**
+	 * A benchmarked operation. The returned value must depend on the work done, so
+	 * that the JIT cannot remove it.
+	 */
+	@FunctionalInterface
+	public interface Operation {
+		long run() throws Exception;
+	}
+
+	public record Result(String name, int samples, double score, double error, String unit) {
+	}
+
+	public enum Format {
+		TEXT, CSV, JSON
+	}
+
+	private record Benchmark(String name, Operation operation) {
+	}
+
+	/* ================================================================================ */
+
+	private final List<Benchmark> benchmarks = new ArrayList<>();
+
+	private int warmupIterations = 5;
+	private int measurementIterations = 5;
+	private long warmupMillis = 1_000L;
+	private long measurementMillis = 1_000L;
+	private Pattern filter = null;
+
+	// the results of all operations go here, so that nothing is dead code
+	private static volatile long sink;
+
+	/* ================================================================================ */
+
+	public void add(String name, Operation operation) {
+		benchmarks.add(new Benchmark(name, operation));
+	}
+
+	public void setWarmup(int iterations, long millis) {
+		warmupIterations = iterations;
+		warmupMillis = millis;
+	}
+
+	public void setMeasurement(int iterations, long millis) {
+		measurementIterations = iterations;
+		measurementMillis = millis;
+	}
+
+	/**
+	 * Only benchmarks whose names contain a match of the regular expression are
+	 * run; null runs all benchmarks.
+	 */
+	public void setFilter(String regex) {
+		filter = regex == null ? null : Pattern.compile(regex);
+	}
+
+	/* ================================================================================ */
+
+	public List<Result> run(PrintStream log) throws Exception {
+		List<Result> results = new ArrayList<>();
+		for (Benchmark benchmark : benchmarks) {
+			if (filter != null && !filter.matcher(benchmark.name()).find()) {
+				continue;
+			}
+			if (log != null) {
+				log.println("# Benchmark: " + benchmark.name());
+			}
+			for (int i = 0; i < warmupIterations; ++i) {
+				double score = iteration(benchmark.operation(), warmupMillis);
+				if (log != null) {
+					log.println(String.format(Locale.ROOT, "# Warmup iteration %d: %.3f ops/s", i + 1, score));
+				}
+			}
+			double[] scores = new double[measurementIterations];
+			for (int i = 0; i < measurementIterations; ++i) {
+				scores[i] = iteration(benchmark.operation(), measurementMillis);
+				if (log != null) {
+					log.println(String.format(Locale.ROOT, "Iteration %d: %.3f ops/s", i + 1, scores[i]));
+				}
+			}
+			results.add(new Result(benchmark.name(), scores.length, mean(scores), error(scores), "ops/s"));
+		}
+		return results;
+	}
+
+	private static double iteration(Operation operation, long millis) throws Exception {
+		long result = 0L;
+		long ops = 0L;
+		long start = System.nanoTime();
+		long end = start + millis * 1_000_000L;
+		long now;
+		do {
+			result += operation.run();
+			++ops;
+			now = System.nanoTime();
+		} while (now < end);
+		sink += result;
+		return ops * 1_000_000_000.0 / (now - start);
+	}
+
+	private static double mean(double[] values) {
+		double sum = 0.0;
+		for (double value : values) {
+			sum += value;
+		}
+		return sum / values.length;
+	}
+
+	private static double error(double[] values) {
+		if (values.length < 2) {
+			return Double.NaN;
+		}
+		double mean = mean(values);
+		double sum = 0.0;
+		for (double value : values) {
+			sum += (value - mean) * (value - mean);
+		}
+		double standardDeviation = Math.sqrt(sum / (values.length - 1));
+		// normal approximation of the 99.9% quantile
+		return 3.291 * standardDeviation / Math.sqrt(values.length);
+	}
+
+	/* ================================================================================ */
+
+	public static void write(List<Result> results, Format format, PrintStream out) {
+		switch (format) {
+		case TEXT -> {
+			out.println(String.format(Locale.ROOT, "%-40s %5s %16s %14s  %s", "Benchmark", "Cnt", "Score", "Error", "Units"));
+			for (Result result : results) {
+				out.println(String.format(Locale.ROOT, "%-40s %5d %16.3f ± %12.3f  %s", result.name(), result.samples(),
+						result.score(), result.error(), result.unit()));
+			}
+		}
+		case CSV -> {
+			out.println("\"Benchmark\",\"Mode\",\"Threads\",\"Samples\",\"Score\",\"Score Error (99.9%)\",\"Unit\"");
+			for (Result result : results) {
+				out.println(String.format(Locale.ROOT, "\"%s\",\"thrpt\",1,%d,%f,%f,\"%s\"", result.name(), result.samples(),
+						result.score(), result.error(), result.unit()));
+			}
+		}
+		case JSON -> {
+			out.println("[");
+			for (int i = 0; i < results.size(); ++i) {
+				Result result = results.get(i);
+				out.println(String.format(Locale.ROOT,
+						"    {\"benchmark\": \"%s\", \"mode\": \"thrpt\", \"threads\": 1, \"measurementIterations\": %d, "
+								+ "\"primaryMetric\": {\"score\": %f, \"scoreError\": %s, \"scoreUnit\": \"%s\"}}%s",
+						result.name(), result.samples(), result.score(),
+						Double.isNaN(result.error()) ? "\"NaN\"" : String.format(Locale.ROOT, "%f", result.error()),
+						result.unit(), i + 1 < results.size() ? "," : ""));
+			}
+			out.println("]");
+		}
+		}
+	}
+}
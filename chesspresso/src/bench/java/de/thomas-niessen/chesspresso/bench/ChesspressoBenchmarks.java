@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import chesspresso.game.Game;
+import chesspresso.game.TraverseListener;
+import chesspresso.move.Move;
+import chesspresso.pgn.PGNReader;
+import chesspresso.pgn.PGNSyntaxError;
+import chesspresso.pgn.PGNWriter;
+import chesspresso.position.FEN;
+import chesspresso.position.MoveablePosition;
+import chesspresso.position.Position;
+
+/**
+ * Benchmarks of the hot paths of Chesspresso: move execution, move generation,
+ * check and mate detection, FEN and PGN input and output, and game navigation.
+ * The PGN benchmarks use the bundled corpus sample.pgn.
+ * <p>
+ * Usage: ChesspressoBenchmarks [-wi n] [-w ms] [-i n] [-r ms] [-rf text|csv|json]
+ * [-rff file] [regex]
+ *
+ * @author Thomas Niessen
+ */
+public final class ChesspressoBenchmarks {
+
+	private static final String[] FENS = { //
+			FEN.START_POSITION, //
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", //
+			"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", //
+			"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", //
+			"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", //
+			"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10" };
+
+	private static final String SAMPLE = "sample.pgn";
+
+	private ChesspressoBenchmarks() {
+	}
+
+	/* ================================================================================ */
+
+	public static void main(String[] args) throws Exception {
+		BenchmarkRunner runner = new BenchmarkRunner();
+		BenchmarkRunner.Format format = BenchmarkRunner.Format.TEXT;
+		String resultFile = null;
+		int warmupIterations = 5, measurementIterations = 5;
+		long warmupMillis = 1_000L, measurementMillis = 1_000L;
+		for (int i = 0; i < args.length; ++i) {
+			switch (args[i]) {
+			case "-wi" -> warmupIterations = Integer.parseInt(args[++i]);
+			case "-w" -> warmupMillis = Long.parseLong(args[++i]);
+			case "-i" -> measurementIterations = Integer.parseInt(args[++i]);
+			case "-r" -> measurementMillis = Long.parseLong(args[++i]);
+			case "-rf" -> format = BenchmarkRunner.Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+			case "-rff" -> resultFile = args[++i];
+			default -> runner.setFilter(args[i]);
+			}
+		}
+		runner.setWarmup(warmupIterations, warmupMillis);
+		runner.setMeasurement(measurementIterations, measurementMillis);
+		addBenchmarks(runner);
+
+		List<BenchmarkRunner.Result> results = runner.run(System.err);
+		if (resultFile == null) {
+			BenchmarkRunner.write(results, format, System.out);
+		} else {
+			try (PrintStream out = new PrintStream(new FileOutputStream(resultFile), true, "UTF-8")) {
+				BenchmarkRunner.write(results, format, out);
+			}
+		}
+	}
+
+	/* ================================================================================ */
+
+	public static void addBenchmarks(BenchmarkRunner runner) throws Exception {
+		Position[] positions = new Position[FENS.length];
+		for (int i = 0; i < FENS.length; ++i) {
+			positions[i] = new Position(FENS[i], false);
+		}
+		short[] moves = new short[MoveablePosition.MAX_NUMBER_OF_MOVES];
+
+		runner.add("Position.doMove+undoMove", () -> {
+			long count = 0L;
+			for (Position position : positions) {
+				int numOfMoves = position.getAllMoves(moves);
+				for (int i = 0; i < numOfMoves; ++i) {
+					position.doMove(moves[i]);
+					position.undoMove();
+				}
+				count += numOfMoves;
+			}
+			return count;
+		});
+
+		runner.add("Position.getAllMoves", () -> {
+			long count = 0L;
+			for (Position position : positions) {
+				count += position.getAllMoves(moves);
+			}
+			return count;
+		});
+
+		// isCheck and isMate cache their results until the next move; so each
+		// position is reached by a move
+		runner.add("Position.isCheck+isMate", () -> {
+			long count = 0L;
+			for (Position position : positions) {
+				int numOfMoves = position.getAllMoves(moves);
+				for (int i = 0; i < numOfMoves; ++i) {
+					position.doMove(moves[i]);
+					if (position.isCheck()) {
+						++count;
+						if (position.isMate()) {
+							++count;
+						}
+					}
+					position.undoMove();
+				}
+			}
+			return count;
+		});
+
+		Position fenPosition = new Position();
+		runner.add("FEN.initFromFEN", () -> {
+			long count = 0L;
+			for (String fen : FENS) {
+				fenPosition.initFromFEN(fen, false);
+				count += fenPosition.getPlyNumber();
+			}
+			return count;
+		});
+
+		runner.add("FEN.getFEN", () -> {
+			long count = 0L;
+			for (Position position : positions) {
+				count += FEN.getFEN(position).length();
+			}
+			return count;
+		});
+
+		byte[] corpus = readSample();
+		List<Game> games = parseAll(corpus);
+		runner.add("PGNReader.parseGame", () -> parseAll(corpus).size());
+
+		MemorySegment segment = MemorySegment.ofArray(corpus);
+		runner.add("PGNReader.parseGame(segment)", () -> {
+			PGNReader reader = new PGNReader(segment, SAMPLE);
+			int count = 0;
+			while (reader.parseGame() != null) {
+				++count;
+			}
+			return count;
+		});
+
+		runner.add("PGNWriter.write", () -> {
+			StringWriter writer = new StringWriter();
+			PGNWriter pgnWriter = new PGNWriter(writer);
+			for (Game game : games) {
+				pgnWriter.write(game);
+			}
+			return writer.getBuffer().length();
+		});
+
+		Game longest = games.get(0);
+		for (Game game : games) {
+			if (game.getNumOfPlies() > longest.getNumOfPlies()) {
+				longest = game;
+			}
+		}
+		Game navigated = longest;
+		navigated.gotoEnd();
+		int endNode = navigated.getCurNode();
+		int plyOffset = navigated.getPosition().getPlyOffset();
+		int numOfPlies = navigated.getNumOfPlies();
+
+		runner.add("Game.gotoNode", () -> {
+			navigated.gotoNode(0);
+			navigated.gotoNode(endNode);
+			return navigated.getCurNode();
+		});
+
+		runner.add("Game.gotoPly", () -> {
+			navigated.gotoPly(plyOffset + numOfPlies);
+			navigated.gotoPly(plyOffset + numOfPlies / 2);
+			return navigated.getCurNode();
+		});
+
+		runner.add("Game.traverse", () -> {
+			long[] count = new long[1];
+			for (Game game : games) {
+				game.traverse(new TraverseListener() {
+					@Override
+					public void notifyMove(Move move, short[] nags, String preMoveComment, String postMoveComment,
+							int plyNumber, int level, String fenBeforeMove) {
+						count[0] += plyNumber;
+					}
+
+					@Override
+					public void notifyLineStart(int level) {
+						++count[0];
+					}
+
+					@Override
+					public void notifyLineEnd(int level) {
+						++count[0];
+					}
+				}, true);
+			}
+			return count[0];
+		});
+	}
+
+	/* ================================================================================ */
+
+	private static byte[] readSample() throws IOException {
+		try (InputStream in = ChesspressoBenchmarks.class.getResourceAsStream(SAMPLE)) {
+			if (in == null) {
+				throw new IOException("Resource not found: " + SAMPLE);
+			}
+			return in.readAllBytes();
+		}
+	}
+
+	private static List<Game> parseAll(byte[] corpus) throws PGNSyntaxError, IOException {
+		PGNReader reader = new PGNReader(new ByteArrayInputStream(corpus), SAMPLE);
+		List<Game> games = new ArrayList<>();
+		Game game;
+		while ((game = reader.parseGame()) != null) {
+			games.add(game);
+		}
+		return games;
+	}
+}
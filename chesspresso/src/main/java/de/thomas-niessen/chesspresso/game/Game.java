@@ -18,8 +18,6 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serial;
 import java.io.Serializable;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,11 +27,9 @@ import chesspresso.Variant;
 import chesspresso.move.IllegalMoveException;
 import chesspresso.move.Move;
 import chesspresso.pgn.PGN;
-import chesspresso.pgn.PGNReader;
-import chesspresso.pgn.PGNSyntaxError;
-import chesspresso.pgn.PGNWriter;
 import chesspresso.position.FEN;
 import chesspresso.position.InvalidFenException;
+import chesspresso.position.LongIntHashMap;
 import chesspresso.position.Position;
 
 /**
@@ -65,7 +61,7 @@ import chesspresso.position.Position;
  */
 public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializable {
 	@Serial
-	private static final long serialVersionUID = 2L;
+	private static final long serialVersionUID = 3L;
 
 	private static final boolean DEBUG = false;
 
@@ -77,6 +73,7 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 	private boolean ignoreNotifications;
 	private boolean alwaysAddLine; // during pgn parsing, always add new lines
 	private List<GameModelChangeListener> changeListeners;
+	private transient PositionCheckpoints checkpoints; // created on demand, see gotoNode
 
 	// NOTE: Don't forget to check readObject, when changing fields!
 
@@ -86,6 +83,20 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		this(new GameModel());
 	}
 
+	/**
+	 * Creates a game with a headless position, see
+	 * {@link Position#createHeadless()}. Such a game is meant for batch processing
+	 * without a user interface: no listeners can be added to its position, and the
+	 * position does not inform the game about its changes. So moves must be added
+	 * by {@link #doMove(short)} or the other methods of the game, not by the
+	 * position's methods.
+	 *
+	 * @return a headless game
+	 */
+	public static Game createHeadless() {
+		return new Game(new GameModel(), Position.createHeadless());
+	}
+
 	public Game(Game game) {
 		this(game.getModel());
 		getPosition().setPlyOffset(game.getPlyOffset());
@@ -95,7 +106,16 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		model = gameModel;
 		position = new Position();
 		position.addPositionListener(this);
+		setStartPosition();
+	}
 
+	private Game(GameModel gameModel, Position headlessPosition) {
+		model = gameModel;
+		position = headlessPosition;
+		setStartPosition();
+	}
+
+	private void setStartPosition() {
 		String fen = model.getHeaderModel().getTag(PGN.TAG_FEN);
 		ignoreNotifications = true;
 		if (fen != null) {
@@ -145,9 +165,8 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		}
 		fragment.position.setPlyOffset(newPlyOffset);
 		while (copy.goForward() && numOfPlies > 0) {
-			Move move = copy.getLastMove();
 			try {
-				fragment.position.doMove(move);
+				fragment.doMove(copy.getPosition().getLastShortMove());
 			} catch (IllegalMoveException _) {
 				return null;
 			}
@@ -168,7 +187,7 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 
 	// ======================================================================
 
-	private GameModel getModel() {
+	GameModel getModel() {
 		return model;
 	}
 
@@ -192,6 +211,10 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		this.alwaysAddLine = alwaysAddLine;
 	}
 
+	public boolean isHeadless() {
+		return position.isHeadless();
+	}
+
 	// ======================================================================
 
 	public void addChangeListener(GameModelChangeListener listener) {
@@ -263,6 +286,7 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		position.runAlgorithm(() -> {
 			model.getHeaderModel().setTag(PGN.TAG_FEN, fen);
 			position.setPositionSnapshot(newPos);
+			checkpoints = null;
 			model.getMoveModel().clear();
 			fireMoveModelChanged();
 			fireHeaderModelChanged();
@@ -290,6 +314,7 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 			model.getHeaderModel().setByCopying(otherModel.getHeaderModel());
 			model.getMoveModel().setByCopying(otherModel.getMoveModel());
 			position.setPositionSnapshot(newPos);
+			checkpoints = null;
 			alwaysAddLine = false;
 			fireHeaderModelChanged();
 			fireMoveModelChanged();
@@ -714,6 +739,41 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 
 	// ======================================================================
 
+	/**
+	 * Does the move in the game's position and updates the move model directly:
+	 * if the move is already a next move, the game goes forward, otherwise the
+	 * move is added as a new line (see also {@link #setAlwaysAddLine(boolean)}).
+	 * The result is the same as for a move done in the position, but the
+	 * notification of the game by the position is bypassed.
+	 *
+	 * @param move the move
+	 * @throws IllegalMoveException if the move cannot be done
+	 */
+	public void doMove(short move) throws IllegalMoveException {
+		boolean ignore = ignoreNotifications;
+		ignoreNotifications = true;
+		try {
+			position.doMove(move);
+		} finally {
+			ignoreNotifications = ignore;
+		}
+		moveDone(move);
+	}
+
+	private void moveDone(short move) {
+		if (!alwaysAddLine) {
+			short[] moves = getNextShortMoves();
+			for (int i = 0; i < moves.length; i++) {
+				if (moves[i] == move) {
+					cur = model.getMoveModel().goForward(cur, i);
+					return;
+				}
+			}
+		}
+		cur = model.getMoveModel().appendAsRightMostLine(cur, move);
+		fireMoveModelChanged();
+	}
+
 	public boolean goBack() {
 		if (DEBUG) {
 			System.out.println("goBack");
@@ -721,6 +781,10 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 
 		int index = model.getMoveModel().goBack(cur, true);
 		if (index != -1) {
+			if (checkpoints != null && checkpoints.reachesHistoryStart(position)) { // see gotoNode
+				gotoNode(index);
+				return true;
+			}
 			cur = index;
 			ignoreNotifications = true;
 			position.undoMove();
@@ -811,26 +875,81 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		});
 	}
 
-	// Note: a node is not necessarily a move.
+	/**
+	 * Goes to the given node. The game starts from the nearest of the current
+	 * node and the position checkpoints above the node, so at most a few moves
+	 * are replayed, see {@link PositionCheckpoints}. If a checkpoint is restored,
+	 * the position's history starts there: the game can go back as usual, but
+	 * the position cannot undo the moves before the checkpoint, and its
+	 * repetition count only covers the moves since the checkpoint. Note: a node
+	 * is not necessarily a move.
+	 *
+	 * @param node the node
+	 */
 	public void gotoNode(int node) {
-		int[] nodeNodes = getNodesToRoot(node);
+		int[] nodeNodes = getNodesToRoot(node); // nodeNodes[nodeNodes.length - 1] is the root
 
 		position.runAlgorithm(() -> {
-			gotoStart();
-			for (int i = nodeNodes.length - 2; i >= 0; i--) {
-				int nextMoveIndex = 0;
-				for (int j = 1; j < getNumOfNextMoves(); j++) {
-					if (model.getMoveModel().goForward(cur, j) == nodeNodes[i]) {
-						nextMoveIndex = j;
+			GameMoveModel moveModel = model.getMoveModel();
+			if (checkpoints == null) {
+				checkpoints = new PositionCheckpoints(getStartPosition());
+			}
+			checkpoints.validate(moveModel, position);
+
+			boolean ignore = ignoreNotifications;
+			ignoreNotifications = true;
+			try {
+				int index = 0;
+				while (index < nodeNodes.length && nodeNodes[index] != cur) {
+					// the checkpoint of the node itself is skipped, so that its last move can be undone
+					if ((index > 0 || nodeNodes.length == 1) && checkpoints.has(nodeNodes[index])) {
+						checkpoints.restore(nodeNodes[index], position);
+						cur = nodeNodes[index];
 						break;
 					}
+					++index;
+				}
+				if (index == nodeNodes.length) { // the path is empty for the root
+					if (cur != 0) {
+						checkpoints.restore(0, position);
+						cur = 0;
+					}
+				} else if (PositionCheckpoints.isCheckpointPly(nodeNodes.length - 1 - index)) {
+					checkpoints.put(cur, position);
 				}
-				goForward(nextMoveIndex);
+				for (--index; index >= 0; --index) {
+					position.doMove(moveModel.getMove(nodeNodes[index]));
+					cur = nodeNodes[index];
+					if (PositionCheckpoints.isCheckpointPly(nodeNodes.length - 1 - index)) {
+						checkpoints.put(cur, position);
+					}
+				}
+			} catch (IllegalMoveException ex) {
+				System.out.println(model.toString() + " at node " + cur);
+				ex.printStackTrace();
+			} finally {
+				ignoreNotifications = ignore;
 			}
 			cur = node; // now that we have made all the moves, set cur to node
 		});
 	}
 
+	/*
+	 * Returns a copy of the start position of the game. After gotoNode, the
+	 * history of the position can start at a checkpoint, so the root checkpoint
+	 * is used then.
+	 */
+	Position getStartPosition() {
+		if (checkpoints != null) {
+			checkpoints.validate(model.getMoveModel(), position);
+			return checkpoints.createRoot(getPlyOffset());
+		}
+		Position start = position.copy(true); // the position has its complete history
+		while (start.undoMove()) {
+		}
+		return start;
+	}
+
 	public void deleteCurrentLine() {
 		position.runAlgorithm(() -> {
 			goBackToLineBegin();
@@ -865,12 +984,16 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		if (getCurrentPly() == ply) {
 			return;
 		}
-		position.runAlgorithm(() -> {
-			gotoStart();
-			for (int i = 0; i < ply - getPlyOffset(); ++i) {
-				goForward();
+		GameMoveModel moveModel = model.getMoveModel();
+		int node = 0;
+		for (int i = 0; i < ply - getPlyOffset(); ++i) {
+			int index = moveModel.goForward(node, 0);
+			if (moveModel.getMove(index) == GameMoveModel.NO_MOVE) {
+				break;
 			}
-		});
+			node = index;
+		}
+		gotoNode(node);
 		// We check the value, because so many apps get it wrong.
 		if (ply < getPlyOffset() || ply > getPlyOffset() + getNumOfPlies()) {
 			System.err.println("Suspicious value in Game::gotoPly: ");
@@ -888,6 +1011,10 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 
 		int index = model.getMoveModel().goBack(cur, false);
 		if (index != -1) {
+			if (checkpoints != null && checkpoints.reachesHistoryStart(position)) { // see gotoNode
+				gotoNode(index);
+				return true;
+			}
 			cur = index; // needs to be set before undoing the move to allow
 			// listeners to check for curNode
 			ignoreNotifications = true;
@@ -920,9 +1047,9 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		if (shortMove != GameMoveModel.NO_MOVE) {
 			try {
 				cur = index;
+				Move move = position.getNextMove(shortMove); // built before the move, no undo/redo needed
 				ignoreNotifications = true;
 				position.doMove(shortMove);
-				Move move = position.getLastMove();
 				ignoreNotifications = false;
 				return move;
 			} catch (IllegalMoveException ex) {
@@ -1035,6 +1162,39 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 		}
 	}
 
+	/**
+	 * Counts how often the positions of the game occur, e.g. to find repeated or
+	 * duplicate positions. The keys of the result are the hash codes of the
+	 * positions, see {@link Position#getHashCode()}.
+	 *
+	 * @param withLines whether to include sublines of the mainline.
+	 * @return the numbers of occurrences by hash code
+	 */
+	public LongIntHashMap getPositionCounts(boolean withLines) {
+		LongIntHashMap counts = new LongIntHashMap(getTotalNumOfPlies() + 1);
+		traverse(new TraverseListener() {
+			@Override
+			public void initTraversal() {
+				counts.addTo(position.getHashCode(), 1);
+			}
+
+			@Override
+			public void notifyMove(Move move, short[] nags, String preMoveComment, String postMoveComment, int plyNumber,
+					int level, String fenBeforeMove) {
+				counts.addTo(position.getHashCode(), 1);
+			}
+
+			@Override
+			public void notifyLineStart(int level) {
+			}
+
+			@Override
+			public void notifyLineEnd(int level) {
+			}
+		}, withLines);
+		return counts;
+	}
+
 	// ======================================================================
 	// hashCode, equals and compareTo all depend on the model's methods.
 
@@ -1095,8 +1255,8 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 				if (otherMove.equals(move)) {
 					found = true;
 					try {
-						game.getPosition().doMove(move);
-						other.getPosition().doMove(otherMove);
+						game.doMove(move.getShortMoveDesc());
+						other.doMove(otherMove.getShortMoveDesc());
 					} catch (IllegalMoveException _) {
 						return false;
 					}
@@ -1105,8 +1265,8 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 							|| !checkNAGs(game.getNags(), other.getNags()) || !checkMoves(game, other)) {
 						return false;
 					}
-					game.getPosition().undoMove();
-					other.getPosition().undoMove();
+					game.goBack();
+					other.goBack();
 				}
 			}
 			if (!found) {
@@ -1204,17 +1364,7 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 			return;
 		}
 		if (type == ChangeType.MOVE_DONE) {
-			if (!alwaysAddLine) {
-				short[] moves = getNextShortMoves();
-				for (int i = 0; i < moves.length; i++) {
-					if (moves[i] == move) {
-						cur = model.getMoveModel().goForward(cur, i);
-						return;
-					}
-				}
-			}
-			cur = model.getMoveModel().appendAsRightMostLine(cur, move);
-			fireMoveModelChanged();
+			moveDone(move);
 		} else if (type == ChangeType.MOVE_UNDONE) {
 			cur = model.getMoveModel().goBack(cur, true);
 		} else if (type == ChangeType.START_POS_CHANGED) {
@@ -1225,6 +1375,7 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 			}
 			cur = 0;
 			model.getMoveModel().clear();
+			checkpoints = null;
 			if (fen.equals(FEN.START_POSITION)) {
 				model.getHeaderModel().removeTag(PGN.TAG_FEN);
 			} else {
@@ -1239,11 +1390,7 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 	@Serial
 	private void readObject(java.io.ObjectInputStream s) throws IOException, ClassNotFoundException, NoSuchFieldException,
 			SecurityException, IllegalArgumentException, IllegalAccessException {
-		String str = s.readUTF();
-		StringReader strReader = new StringReader(str);
-		PGNReader pgnRreader = new PGNReader(strReader, "no file");
-
-		// Before we can parse PGN data into this, we need to prepare it as if a standard constructor 
+		// Before we can read the game data into this, we need to prepare it as if a standard constructor 
 		// had been called! (Reflection allows to use constructors, but not for this.)
 		Class<Game> c = Game.class;
 		{
@@ -1261,19 +1408,12 @@ public non-sealed class Game implements Comparable<Game>, RelatedGame, Serializa
 
 		position.addPositionListener(this);
 
-		try {
-			pgnRreader.parseGame(this);
-		} catch (PGNSyntaxError e) {
-			throw new IOException(e.getMessage());
-		}
+		new GameCodec().read(s, this);
 	}
 
 	@Serial
 	private synchronized void writeObject(java.io.ObjectOutputStream s) throws IOException {
-		StringWriter buf = new StringWriter();
-		PGNWriter writer = new PGNWriter(buf);
-		writer.write(this);
-		s.writeUTF(buf.toString());
+		new GameCodec().write(this, s);
 	}
 
 	// ======================================================================
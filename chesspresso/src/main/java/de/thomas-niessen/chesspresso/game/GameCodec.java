@@ -0,0 +1,301 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import chesspresso.Variant;
+import chesspresso.pgn.PGN;
+import chesspresso.position.InvalidFenException;
+import chesspresso.position.Position;
+
+/**
+ * A compact binary format for games. Unlike PGN, the format needs no parsing
+ * of SAN and keeps the comments unchanged, and the size of a game is not
+ * limited. A game is written as:
+ * <ul>
+ * <li>the format version and flags,
+ * <li>the variant, the FEN of the start position (empty for the standard start
+ * position) and the ply offset,
+ * <li>the header tags in their order; the names are stored in a table of this
+ * codec, so a repeated name takes a single byte,
+ * <li>the nodes of the move model: lines, comments, NAGs and moves. By default
+ * a move is written as its index in the sorted legal moves of its position,
+ * which needs one byte, but the position has to be replayed for writing and
+ * reading. Without move indices, a move is written as short.
+ * </ul>
+ *
+ * The tag names written so far are part of the state of a codec. Hence, a
+ * sequence of games must be read by a single codec in the order in which it
+ * was written by a single codec, and a codec must not be used for reading and
+ * writing at the same time. {@link #toBytes(Game)} and
+ * {@link #fromBytes(byte[])} use a new codec for a single game.
+ * 
+ * <p>
+ * Games are serialized in this format, see {@link java.io.Serializable}.
+ *
+ * @author Thomas Niessen
+ */
+public final class GameCodec {
+
+	/** The version of the format written by this class. */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final int FLAG_MOVE_INDICES = 1;
+
+	// The tag names known to every codec.
+	private static final String[] INITIAL_TAG_NAMES = { PGN.TAG_EVENT, PGN.TAG_SITE, PGN.TAG_DATE, PGN.TAG_ROUND,
+			PGN.TAG_WHITE, PGN.TAG_BLACK, PGN.TAG_RESULT, PGN.TAG_EVENT_DATE, PGN.TAG_WHITE_ELO, PGN.TAG_BLACK_ELO,
+			PGN.TAG_ECO, PGN.TAG_SET_UP, PGN.TAG_FEN, PGN.TAG_TERMINATION, PGN.TAG_VARIANT, PGN.TAG_ANNOTATOR,
+			PGN.TAG_MODE };
+
+	private final boolean withMoveIndices;
+	private final List<String> tagNames;
+	private final Map<String, Integer> tagNameIds;
+
+	// ======================================================================
+
+	/**
+	 * Creates a codec which writes the moves as indices of legal moves.
+	 */
+	public GameCodec() {
+		this(true);
+	}
+
+	/**
+	 * Creates a codec. The choice of the move format affects writing only; the
+	 * reader takes it from the data.
+	 *
+	 * @param withMoveIndices whether moves are written as indices of legal moves
+	 *                        (smaller) or as shorts (faster)
+	 */
+	public GameCodec(boolean withMoveIndices) {
+		this.withMoveIndices = withMoveIndices;
+		this.tagNames = new ArrayList<>();
+		this.tagNameIds = new HashMap<>();
+		for (String tagName : INITIAL_TAG_NAMES) {
+			addTagName(tagName);
+		}
+	}
+
+	// ======================================================================
+
+	/**
+	 * Returns the game in the binary format, written by a new codec.
+	 *
+	 * @param game the game
+	 * @return the bytes
+	 */
+	public static byte[] toBytes(Game game) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			new GameCodec().write(game, new DataOutputStream(bytes));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("GameCodec::toBytes: " + e.getMessage(), e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads a game from bytes created by {@link #toBytes(Game)}.
+	 *
+	 * @param bytes the bytes
+	 * @return the game
+	 * @throws IOException if the bytes are not a game in the binary format
+	 */
+	public static Game fromBytes(byte[] bytes) throws IOException {
+		return new GameCodec().read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	// ======================================================================
+
+	/**
+	 * Writes the game. The cursor of the game is not changed.
+	 *
+	 * @param game the game
+	 * @param out  the output
+	 * @throws IOException if the output throws, or if the game contains a line
+	 *                     which cannot be replayed
+	 */
+	public void write(Game game, DataOutput out) throws IOException {
+		Position startPos = game.getStartPosition();
+
+		out.writeByte(FORMAT_VERSION);
+		out.writeByte(withMoveIndices ? FLAG_MOVE_INDICES : 0);
+		writeString(out, startPos.getVariant().name());
+		writeString(out, startPos.isStartPosition() ? "" : startPos.getFEN());
+		writeVarInt(out, game.getPlyOffset());
+
+		GameHeaderModel headerModel = game.getModel().getHeaderModel();
+		List<String> names = new ArrayList<>();
+		for (String tagName : headerModel.getTags()) {
+			if (headerModel.getTag(tagName) != null) {
+				names.add(tagName);
+			}
+		}
+		writeVarInt(out, names.size());
+		for (String tagName : names) {
+			Integer id = tagNameIds.get(tagName);
+			if (id != null) {
+				writeVarInt(out, id);
+			} else {
+				writeVarInt(out, tagNames.size());
+				writeString(out, tagName);
+				addTagName(tagName);
+			}
+			writeString(out, headerModel.getTag(tagName));
+		}
+
+		game.getModel().getMoveModel().writeNodes(out, withMoveIndices ? startPos : null);
+	}
+
+	/**
+	 * Reads a game written by {@link #write(Game, DataOutput)}.
+	 *
+	 * @param in the input
+	 * @return the game
+	 * @throws IOException if the input throws or does not contain a game in the
+	 *                     binary format
+	 */
+	public Game read(DataInput in) throws IOException {
+		Game game = new Game();
+		read(in, game);
+		return game;
+	}
+
+	/**
+	 * Reads a game written by {@link #write(Game, DataOutput)} into a headless
+	 * game, see {@link Game#createHeadless()}.
+	 *
+	 * @param in the input
+	 * @return the headless game
+	 * @throws IOException if the input throws or does not contain a game in the
+	 *                     binary format
+	 */
+	public Game readHeadless(DataInput in) throws IOException {
+		Game game = Game.createHeadless();
+		read(in, game);
+		return game;
+	}
+
+	/*
+	 * Reads a game into the new game, which has no listeners yet.
+	 */
+	void read(DataInput in, Game game) throws IOException {
+		int version = in.readUnsignedByte();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("GameCodec::read: unsupported format version " + version);
+		}
+		int flags = in.readUnsignedByte();
+		Variant variant;
+		try {
+			variant = Variant.valueOf(readString(in));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("GameCodec::read: " + e.getMessage());
+		}
+		String fen = readString(in);
+		int plyOffset = readVarInt(in);
+
+		if (variant == Variant.CHESS960) {
+			game.setChess960();
+		}
+		if (!fen.isEmpty()) {
+			try {
+				game.setGameByFEN(fen, false);
+			} catch (InvalidFenException e) {
+				throw new IOException("GameCodec::read: " + e.getMessage());
+			}
+		}
+		if (game.getPlyOffset() != plyOffset) {
+			game.getPosition().setPlyOffset(plyOffset);
+		}
+
+		// setGameByFEN has set the FEN tag; the stored tags replace it, so their order is kept
+		GameHeaderModel headerModel = game.getModel().getHeaderModel();
+		headerModel.clearTags();
+		int numOfTags = readVarInt(in);
+		for (int i = 0; i < numOfTags; ++i) {
+			int id = readVarInt(in);
+			String tagName;
+			if (id < tagNames.size()) {
+				tagName = tagNames.get(id);
+			} else if (id == tagNames.size()) {
+				tagName = readString(in);
+				addTagName(tagName);
+			} else {
+				throw new IOException("GameCodec::read: illegal tag name id " + id);
+			}
+			headerModel.setTag(tagName, readString(in));
+		}
+
+		Position startPos = (flags & FLAG_MOVE_INDICES) != 0 ? game.getPosition().copy(false) : null;
+		game.getModel().getMoveModel().readNodes(in, startPos);
+	}
+
+	private void addTagName(String tagName) {
+		tagNameIds.put(tagName, tagNames.size());
+		tagNames.add(tagName);
+	}
+
+	// ======================================================================
+	// primitives, also used by GameMoveModel
+
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int readVarInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("GameCodec::readVarInt: malformed value");
+	}
+
+	// Unlike DataOutput::writeUTF, the length of the string is not limited.
+	static void writeString(DataOutput out, String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInput in) throws IOException {
+		int length = readVarInt(in);
+		if (length < 0) {
+			throw new IOException("GameCodec::readString: illegal length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
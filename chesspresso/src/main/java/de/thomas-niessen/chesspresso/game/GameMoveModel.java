@@ -14,6 +14,9 @@
  ******************************************************************************/
 package chesspresso.game;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serial;
 import java.io.Serializable;
@@ -22,8 +25,10 @@ import java.util.List;
 import java.util.Map;
 //import java.util.*;
 
+import chesspresso.move.IllegalMoveException;
 import chesspresso.move.Move;
 //import chesspresso.*;
+import chesspresso.position.MoveablePosition;
 import chesspresso.position.NAG;
 
 /**
@@ -47,6 +52,14 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 			POST_COMMENT_START = Move.OTHER_SPECIALS + 4, POST_COMMENT_END = Move.OTHER_SPECIALS + 5,
 			NAG_BASE = Move.OTHER_SPECIALS + 16, LAST_SPECIAL = (short) (NAG_BASE + NAG.NUM_OF_NAGS);
 
+	// A comment is stored in four nodes: PRE_COMMENT_START or POST_COMMENT_START, two nodes with
+	// 12 bits each of the id of its text in comments, and the corresponding end marker. The id nodes
+	// are special values, but neither markers nor NAGs.
+	private final static int COMMENT_NODES = 4;
+	private final static int COMMENT_ID_BASE = 0x8000;
+	private final static int MAX_NUM_OF_COMMENT_IDS = 1 << 24;
+	private final static String[] NO_COMMENTS = new String[0];
+
 	// If LAST_SPECIAL is changed, uncomment this:
 	//	static {
 	//		if (LAST_SPECIAL > Move.SPECIAL_MOVE + Move.NUM_OF_SPECIAL_MOVES) {
@@ -59,7 +72,15 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 	private short[] nodes;
 	private int size;
 	private int hashCode;
-	private boolean hasComment;
+	private String[] comments; // indexed by comment id, null for removed comments
+	private int numOfCommentIds;
+	private int numOfComments;
+	private transient int modCount; // increased by each change, see getModCount
+
+	// The structural index, see buildIndex. Queries only read this field, so games sharing the model
+	// can be read by several threads.
+	private transient volatile StructuralIndex structuralIndex;
+	private transient int staleQueries; // a hint only, so lost updates by concurrent queries do no harm
 
 	// ======================================================================
 
@@ -69,7 +90,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		nodes[1] = LINE_END;
 		size = 2;
 		hashCode = 0;
-		hasComment = false;
+		clearComments();
 	}
 
 	void clear() {
@@ -78,7 +99,8 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		nodes[1] = LINE_END;
 		size = 2;
 		hashCode = 0;
-		hasComment = false;
+		clearComments();
+		++modCount;
 	}
 
 	GameMoveModel getDeepCopy() {
@@ -95,7 +117,20 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		nodes = Arrays.copyOf(otherModel.nodes, otherModel.nodes.length);
 		size = otherModel.size;
 		hashCode = otherModel.hashCode;
-		hasComment = otherModel.hasComment;
+		comments = otherModel.numOfCommentIds == 0 ? NO_COMMENTS
+				: Arrays.copyOf(otherModel.comments, otherModel.numOfCommentIds);
+		numOfCommentIds = otherModel.numOfCommentIds;
+		numOfComments = otherModel.numOfComments;
+		++modCount;
+	}
+
+	/**
+	 * Returns a counter which is increased by every change of the model. Data
+	 * derived from the model and keyed by node indices, e.g. the position
+	 * checkpoints of a game, is valid as long as the counter is unchanged.
+	 */
+	int getModCount() {
+		return modCount;
 	}
 
 	// ======================================================================
@@ -135,6 +170,115 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 
 	private void changed() {
 		hashCode = 0;
+		++modCount;
+		staleQueries = 0;
+	}
+
+	// ======================================================================
+	// structural index
+
+	// After a change, so many queries are answered by scanning before the index is rebuilt.
+	// Thus, a series of changes (e.g. while a game is parsed) does not rebuild the index again and again.
+	private final static int STALE_QUERIES_BEFORE_REBUILD = 16;
+
+	/*
+	 * The arrays of the index are filled completely before the index is published
+	 * by the volatile field, and they are not changed by queries. Only addMove
+	 * extends them; like every change of the model, it must not run concurrently
+	 * with queries.
+	 */
+	private record StructuralIndex(int modCount, int[] parents, int[] firstChildren, int[] nextSiblings,
+			int[] depths) {
+	}
+
+	private StructuralIndex getValidIndex() {
+		StructuralIndex index = structuralIndex;
+		return index != null && index.modCount == modCount ? index : null;
+	}
+
+	/**
+	 * Returns the structural index, if the queries for the node at the given
+	 * index can be answered by it, and null otherwise. The index is built lazily,
+	 * when the model has not been changed for a while. Only the root and moves
+	 * are indexed.
+	 */
+	private StructuralIndex getIndex(int index) {
+		StructuralIndex structure = getValidIndex();
+		if (structure == null) {
+			if (++staleQueries < STALE_QUERIES_BEFORE_REBUILD) {
+				return null;
+			}
+			structure = buildIndex();
+			structuralIndex = structure;
+		}
+		return index == 0 || isMoveValue(nodes[index]) ? structure : null;
+	}
+
+	/**
+	 * Builds the structural index over the nodes, i.e. the root at index 0 and
+	 * the moves, in one pass:
+	 * <ul>
+	 * <li>parents: the result of goBack(index, true),
+	 * <li>firstChildren: the result of goForward(index), i.e. the next move in
+	 * the same line or the LINE_END of the line,
+	 * <li>nextSiblings: the first move of the next alternative line, or -1,
+	 * <li>depths: 1 for the main line, 2 for its variations, and so on.
+	 * </ul>
+	 */
+	private StructuralIndex buildIndex() {
+		int[] parents = new int[nodes.length];
+		int[] firstChildren = new int[nodes.length];
+		int[] nextSiblings = new int[nodes.length];
+		int[] depths = new int[nodes.length];
+		// per open line: its last move so far (-1 for none), and the latest first move of the
+		// lines which are alternatives to that move; the root is the last move before the main line
+		int[] lastMoves = new int[8];
+		int[] lastAlternatives = new int[8];
+		int level = 0;
+		lastMoves[0] = 0;
+		lastAlternatives[0] = -1;
+		parents[0] = -1;
+		nextSiblings[0] = -1;
+		depths[0] = 1;
+		for (int index = 1; index < size; ++index) {
+			short value = nodes[index];
+			if (value == LINE_START) {
+				++level;
+				if (level == lastMoves.length) {
+					lastMoves = Arrays.copyOf(lastMoves, 2 * level);
+					lastAlternatives = Arrays.copyOf(lastAlternatives, 2 * level);
+				}
+				lastMoves[level] = -1;
+				lastAlternatives[level] = -1;
+			} else if (value == LINE_END) {
+				if (lastMoves[level] >= 0) {
+					firstChildren[lastMoves[level]] = index;
+				}
+				if (--level < 0) {
+					break;
+				}
+			} else if (value == PRE_COMMENT_START) {
+				index = skipPreComment(index);
+			} else if (value == POST_COMMENT_START) {
+				index = skipPostComment(index);
+			} else if (isMoveValue(value)) {
+				int lastMove = lastMoves[level];
+				if (lastMove >= 0) {
+					parents[index] = lastMove;
+					firstChildren[lastMove] = index;
+				} else { // the first move of a variation
+					int alternativeTo = lastMoves[level - 1];
+					parents[index] = parents[alternativeTo];
+					nextSiblings[lastAlternatives[level - 1]] = index;
+					lastAlternatives[level - 1] = index;
+				}
+				nextSiblings[index] = -1;
+				depths[index] = level + 1;
+				lastMoves[level] = index;
+				lastAlternatives[level] = index;
+			}
+		}
+		return new StructuralIndex(modCount, parents, firstChildren, nextSiblings, depths);
 	}
 
 	// ======================================================================
@@ -322,18 +466,108 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 	// ======================================================================
 
 	boolean hasComment() {
-		return hasComment;
+		return numOfComments > 0;
+	}
+
+	private void clearComments() {
+		comments = NO_COMMENTS;
+		numOfCommentIds = 0;
+		numOfComments = 0;
+	}
+
+	/*
+	 * Writes the nodes of a comment with the given text, starting at index.
+	 */
+	private void setComment(int index, short startMarker, short endMarker, String text) {
+		if (numOfCommentIds == MAX_NUM_OF_COMMENT_IDS) {
+			packComments();
+			if (numOfCommentIds == MAX_NUM_OF_COMMENT_IDS) {
+				throw new IllegalStateException("Too many comments: " + numOfCommentIds);
+			}
+		}
+		if (numOfCommentIds == comments.length) {
+			comments = Arrays.copyOf(comments, Math.min(Math.max(8, 2 * numOfCommentIds), MAX_NUM_OF_COMMENT_IDS));
+		}
+		comments[numOfCommentIds] = text;
+		++numOfComments;
+		nodes[index] = startMarker;
+		setCommentId(index, numOfCommentIds++);
+		nodes[index + COMMENT_NODES - 1] = endMarker;
+	}
+
+	private void setCommentId(int index, int id) {
+		nodes[index + 1] = (short) (COMMENT_ID_BASE | (id >>> 12));
+		nodes[index + 2] = (short) (COMMENT_ID_BASE | (id & 0xFFF));
+	}
+
+	// index: the index of the comment's start marker
+	private int getCommentId(int index) {
+		return ((nodes[index + 1] & 0xFFF) << 12) | (nodes[index + 2] & 0xFFF);
+	}
+
+	// index: the index of the comment's start marker
+	private String getComment(int index) {
+		return comments[getCommentId(index)];
+	}
+
+	/*
+	 * Releases the text of the comment starting at index, if any. This must be
+	 * called before the comment's nodes are overwritten.
+	 */
+	private void releaseComment(int index) {
+		short value = nodes[index];
+		if (value == PRE_COMMENT_START || value == POST_COMMENT_START) {
+			comments[getCommentId(index)] = null;
+			--numOfComments;
+		}
+	}
+
+	/*
+	 * Renumbers the comments in the order of the nodes and drops the texts of
+	 * removed comments.
+	 */
+	private void packComments() {
+		int num = 0;
+		for (int index = 0; index < size; ++index) {
+			short value = nodes[index];
+			if (value == PRE_COMMENT_START || value == POST_COMMENT_START) {
+				++num;
+				index += COMMENT_NODES - 1;
+			}
+		}
+		String[] newComments = num == 0 ? NO_COMMENTS : new String[num];
+		int id = 0;
+		for (int index = 0; index < size; ++index) {
+			short value = nodes[index];
+			if (value == PRE_COMMENT_START || value == POST_COMMENT_START) {
+				newComments[id] = getComment(index);
+				setCommentId(index, id++);
+				index += COMMENT_NODES - 1;
+			}
+		}
+		comments = newComments;
+		numOfCommentIds = num;
+		numOfComments = num;
+	}
+
+	private static String toPgnComment(String comment) {
+		StringBuilder sb = new StringBuilder(comment.length());
+		for (int i = 0; i < comment.length(); i++) {
+			char ch = comment.charAt(i);
+			if ((ch >= 32 && ch <= 126) || (ch >= 192 && ch <= 255)) {// these are the legal chars in PGN
+				sb.append(ch);
+			} else {
+				sb.append('?');
+			}
+		}
+		return sb.toString();
 	}
 
 	private int skipPreComment(int index) {
 		if (nodes[index] == PRE_COMMENT_START) {
-			while (nodes[index] != PRE_COMMENT_END) {
-				index++;
-			}
+			index += COMMENT_NODES - 1;
 		} else if (nodes[index] == PRE_COMMENT_END) {
-			while (nodes[index] != PRE_COMMENT_START) {
-				index--;
-			}
+			index -= COMMENT_NODES - 1;
 		} else {
 			throw new IllegalArgumentException(
 					"No comment starts or ends at index " + index + " move " + valueToString(nodes[index]));
@@ -343,13 +577,9 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 
 	private int skipPostComment(int index) {
 		if (nodes[index] == POST_COMMENT_START) {
-			while (nodes[index] != POST_COMMENT_END) {
-				index++;
-			}
+			index += COMMENT_NODES - 1;
 		} else if (nodes[index] == POST_COMMENT_END) {
-			while (nodes[index] != POST_COMMENT_START) {
-				index--;
-			}
+			index -= COMMENT_NODES - 1;
 		} else {
 			throw new IllegalArgumentException(
 					"No comment starts or ends at index " + index + " move " + valueToString(nodes[index]));
@@ -364,26 +594,14 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 			}
 		}
 		if (index - 1 >= 0 && nodes[index - 1] == PRE_COMMENT_END) {
-			index -= 2;
-			StringBuilder sb = new StringBuilder();
-			while (nodes[index] != PRE_COMMENT_START) {
-				sb.insert(0, (char) nodes[index]);
-				--index;
-			}
-			return sb.toString();
+			return getComment(index - COMMENT_NODES);
 		} else if (index == 0) {
 			index = 1;
 			while (nodes[index] == NO_MOVE) {
 				++index;
 			}
 			if (nodes[index] == PRE_COMMENT_START) {
-				++index;
-				StringBuilder sb = new StringBuilder();
-				while (nodes[index] != PRE_COMMENT_END) {
-					sb.append((char) nodes[index]);
-					++index;
-				}
-				return sb.toString();
+				return getComment(index);
 			}
 		}
 		return null;
@@ -409,13 +627,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		}
 
 		if (nodes[index + 1] == POST_COMMENT_START) {
-			index += 2;
-			StringBuilder sb = new StringBuilder();
-			while (nodes[index] != POST_COMMENT_END) {
-				sb.append((char) nodes[index]);
-				index++;
-			}
-			return sb.toString();
+			return getComment(index + 1);
 		} else {
 			return null;
 		}
@@ -449,12 +661,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		}
 		boolean remChange = removePreMoveComment(index);
 		boolean addChange = addPreMoveComment(index, comment);
-		if (remChange || addChange) {
-			hasComment = true;
-			return true;
-		} else {
-			return false;
-		}
+		return remChange || addChange;
 		// TN: that's not the same as
 		// return removePreMoveComment(index) || addPreMoveComment(index, comment);
 		// because addPreMoveComment is not executed, if removePreMoveComment returns true
@@ -469,12 +676,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		}
 		boolean remChange = removePostMoveComment(index);
 		boolean addChange = addPostMoveComment(index, comment);
-		if (remChange || addChange) {
-			hasComment = true;
-			return true;
-		} else {
-			return false;
-		}
+		return remChange || addChange;
 		// TN: that's not the same as
 		// return removePostMoveComment(index) || addPostMoveComment(index, comment);
 		// because addPostMoveComment is not executed, if removePostMoveComment returns true
@@ -496,21 +698,10 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 			return false;
 		}
 
-		makeSpace(index, comment.length() + 2, false);
-		nodes[index] = PRE_COMMENT_START;
-		for (int i = 0; i < comment.length(); i++) {
-			short sh = (short) comment.charAt(i);
-			if ((sh >= 32 && sh <= 126) || (sh >= 192 && sh <= 255)) {// these are the legal chars in PGN
-				nodes[index + 1 + i] = sh;
-			} else {
-				nodes[index + 1 + i] = '?';
-			}
-		}
-		nodes[index + comment.length() + 1] = PRE_COMMENT_END;
+		makeSpace(index, COMMENT_NODES, false);
+		setComment(index, PRE_COMMENT_START, PRE_COMMENT_END, toPgnComment(comment));
 		changed();
 
-		hasComment = true;
-
 		if (DEBUG) {
 			write(System.out);
 		}
@@ -539,21 +730,10 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 				index++;
 			}
 		}
-		makeSpace(index + 1, comment.length() + 2, false);
-		nodes[index + 1] = POST_COMMENT_START;
-		for (int i = 0; i < comment.length(); i++) {
-			short sh = (short) comment.charAt(i);
-			if ((sh >= 32 && sh <= 126) || (sh >= 192 && sh <= 255)) {// these are the legal chars in PGN
-				nodes[index + 2 + i] = sh;
-			} else {
-				nodes[index + 2 + i] = '?';
-			}
-		}
-		nodes[index + comment.length() + 2] = POST_COMMENT_END;
+		makeSpace(index + 1, COMMENT_NODES, false);
+		setComment(index + 1, POST_COMMENT_START, POST_COMMENT_END, toPgnComment(comment));
 		changed();
 
-		hasComment = true;
-
 		if (DEBUG) {
 			write(System.out);
 		}
@@ -574,7 +754,9 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 
 		boolean isChanged = false;
 		if (nodes[index - 1] == PRE_COMMENT_END) {
-			for (int i = skipPreComment(index - 1); i < index; i++) {
+			int start = skipPreComment(index - 1);
+			releaseComment(start);
+			for (int i = start; i < index; i++) {
 				nodes[i] = NO_MOVE;
 			}
 			isChanged = true;
@@ -582,16 +764,6 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		if (isChanged) {
 			changed();
 		}
-		// TN added:
-		if (isChanged) {
-			hasComment = false;
-			for (int i = 0; i < size; ++i) {
-				if (nodes[i] == PRE_COMMENT_START || nodes[i] == POST_COMMENT_START) {
-					hasComment = true;
-					break;
-				}
-			}
-		}
 
 		if (DEBUG) {
 			write(System.out);
@@ -617,6 +789,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 
 		boolean isChanged = false;
 		if (nodes[index + 1] == POST_COMMENT_START) {
+			releaseComment(index + 1);
 			for (int i = skipPostComment(index + 1); i > index; i--) {
 				nodes[i] = NO_MOVE;
 			}
@@ -624,13 +797,6 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		}
 		if (isChanged) {
 			changed();
-			hasComment = false;
-			for (int i = 0; i < size; ++i) {
-				if (nodes[i] == PRE_COMMENT_START || nodes[i] == POST_COMMENT_START) {
-					hasComment = true;
-					break;
-				}
-			}
 		}
 
 		if (DEBUG) {
@@ -640,37 +806,27 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 	}
 
 	void setEmptyGameComment(String comment) {
+		clearComments();
 		if (comment != null && !comment.isEmpty()) {
-			nodes = new short[Math.max(32, comment.length() + 4)];
+			nodes = new short[32];
 			nodes[0] = LINE_START;
-			nodes[1] = PRE_COMMENT_START;
-			for (int i = 0; i < comment.length(); i++) {
-				nodes[2 + i] = (short) comment.charAt(i);
-			}
-			nodes[comment.length() + 2] = PRE_COMMENT_END;
-			nodes[comment.length() + 3] = LINE_END;
-			size = comment.length() + 4;
-			hasComment = true;
+			setComment(1, PRE_COMMENT_START, PRE_COMMENT_END, comment);
+			nodes[COMMENT_NODES + 1] = LINE_END;
+			size = COMMENT_NODES + 2;
 		} else {
 			nodes = new short[32];
 			nodes[0] = LINE_START;
 			nodes[1] = LINE_END;
 			size = 2;
 			hashCode = 0;
-			hasComment = false;
 		}
+		++modCount;
 	}
 
 	String getEmptyGameComment() {
 		if (getTotalNumOfPlies() == 0) {
 			if (nodes[1] == PRE_COMMENT_START) {
-				int index = 2;
-				StringBuilder sb = new StringBuilder();
-				while (nodes[index] != PRE_COMMENT_END) {
-					sb.append((char) nodes[index]);
-					++index;
-				}
-				return sb.toString();
+				return getComment(1);
 			}
 		}
 		return null;
@@ -708,18 +864,10 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 	}
 
 	int getTotalCommentSize() {
-		boolean inComment = false;
 		int num = 0;
-		for (int i = 0; i < size; i++) {
-			short move = nodes[i];
-			if (move == PRE_COMMENT_END || move == POST_COMMENT_END) {
-				inComment = false;
-			}
-			if (inComment) {
-				num++;
-			}
-			if (move == PRE_COMMENT_START || move == POST_COMMENT_START) {
-				inComment = true;
+		for (int id = 0; id < numOfCommentIds; id++) {
+			if (comments[id] != null) {
+				num += comments[id].length();
 			}
 		}
 		return num;
@@ -740,6 +888,11 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 	 * @return true, if the node at the given index belongs to the main line, false otherwise
 	 */
 	boolean isMainLine(int index) {
+		StructuralIndex structure = getIndex(index);
+		if (structure != null) {
+			return structure.depths[index] == 1;
+		}
+
 		int level = 0;
 		for (int i = 0; i <= index; ++i) {
 			short node = nodes[i];
@@ -768,6 +921,11 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		if (index <= 0) {
 			return -1;
 		}
+		StructuralIndex structure = getIndex(index);
+		if (structure != null) {
+			int parent = structure.parents[index];
+			return gotoMainLine || structure.firstChildren[parent] == index ? parent : -1;
+		}
 
 		index--;
 		int level = 0;
@@ -824,6 +982,10 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		if (EXTRA_CHECKS) {
 			checkLegalCursor(index);
 		}
+		StructuralIndex structure = getIndex(index);
+		if (structure != null) {
+			return structure.firstChildren[index];
+		}
 
 		index++;
 		int level = 0;
@@ -866,6 +1028,16 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		if (EXTRA_CHECKS) {
 			checkLegalCursor(index);
 		}
+		StructuralIndex structure = getIndex(index);
+		if (structure != null) {
+			int next = structure.firstChildren[index];
+			if (nodes[next] != LINE_END) {
+				for (; whichLine > 0 && next != -1; --whichLine) {
+					next = structure.nextSiblings[next];
+				}
+			}
+			return next;
+		}
 
 		index = goForward(index);
 		if (nodes[index] != LINE_END && whichLine > 0) {
@@ -917,6 +1089,18 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		if (EXTRA_CHECKS) {
 			checkLegalCursor(index);
 		}
+		StructuralIndex structure = getIndex(index);
+		if (structure != null) {
+			int next = structure.firstChildren[index];
+			if (nodes[next] == LINE_END) {
+				return 0;
+			}
+			int numOfMoves = 1;
+			while ((next = structure.nextSiblings[next]) != -1) {
+				++numOfMoves;
+			}
+			return numOfMoves;
+		}
 
 		index = goForward(index);
 		if (nodes[index] == LINE_END) {
@@ -1071,8 +1255,11 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 			changed();
 			return index + 1;
 		} else { // append a move to current line
-			index = goForward(index); // go to line's end
-			index = findEarliestNoMove(index); // go to left border of a no move zone
+			int lastMove = index;
+			int lineEnd = goForward(index); // go to line's end
+			index = findEarliestNoMove(lineEnd); // go to left border of a no move zone
+			// if no nodes are moved and the index is valid, it is updated instead of rebuilt
+			StructuralIndex structure = nodes[index] == NO_MOVE && getValidIndex() != null ? getIndex(lastMove) : null;
 			makeSpace(index, 1, true);
 			nodes[index] = move;
 			if (DEBUG) {
@@ -1082,6 +1269,15 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 				System.out.println("  --> " + index);
 			}
 			changed();
+			if (structure != null) {
+				structure.parents[index] = lastMove;
+				structure.firstChildren[lastMove] = index;
+				structure.firstChildren[index] = lineEnd;
+				structure.nextSiblings[index] = -1;
+				structure.depths[index] = structure.depths[lastMove];
+				structuralIndex = new StructuralIndex(modCount, structure.parents, structure.firstChildren,
+						structure.nextSiblings, structure.depths);
+			}
 			return index;
 		}
 	}
@@ -1220,6 +1416,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 
 		if (retVal >= 0) {
 			nodes = newMoves;
+			changed();
 		}
 		return retVal;
 	}
@@ -1262,6 +1459,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 				}
 				break;
 			}
+			releaseComment(index);
 			nodes[index] = NO_MOVE;
 			index++;
 		}
@@ -1318,6 +1516,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 				}
 				break;
 			}
+			releaseComment(index);
 			nodes[index] = NO_MOVE;
 			index++;
 		}
@@ -1343,6 +1542,7 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 				++level;
 			}
 			if (level > 0) {
+				releaseComment(index);
 				nodes[index] = NO_MOVE;
 				changed = true;
 			}
@@ -1395,6 +1595,8 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		nodes = newMoves;
 		nodes[newSize] = LINE_END;
 		size = newSize;
+		packComments();
+		++modCount;
 
 		if (DEBUG) {
 			write(System.out);
@@ -1406,6 +1608,205 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 		return index;
 	}
 
+	// ======================================================================
+	// binary format, see GameCodec
+
+	// The tokens of the binary format. Tokens up to MAX_MOVE_INDEX are indices of moves in the sorted
+	// legal moves, TOKEN_MOVE is followed by a move as short, a comment token by the text and TOKEN_NAG
+	// by the NAG as unsigned byte.
+	private final static int MAX_MOVE_INDEX = 0xEF, TOKEN_MOVE = 0xF0, TOKEN_LINE_START = 0xF1, TOKEN_LINE_END = 0xF2,
+			TOKEN_PRE_COMMENT = 0xF3, TOKEN_POST_COMMENT = 0xF4, TOKEN_NAG = 0xF5;
+
+	/*
+	 * Writes the nodes as tokens; NO_MOVE nodes are dropped. If position is not
+	 * null, it must be the start position of the game, and the moves are written
+	 * as indices in the sorted legal moves. Otherwise, and for moves which are not
+	 * legal (e.g. null moves), the moves are written as shorts. The position is
+	 * changed.
+	 */
+	void writeNodes(DataOutput out, MoveablePosition position) throws IOException {
+		LineTracker tracker = new LineTracker(position);
+		for (int index = 1; index < size; ++index) {
+			short value = nodes[index];
+			if (value == NO_MOVE) {
+				continue;
+			}
+			if (value == LINE_START) {
+				out.writeByte(TOKEN_LINE_START);
+				tracker.lineStarted();
+			} else if (value == LINE_END) {
+				out.writeByte(TOKEN_LINE_END);
+				if (!tracker.lineEnded()) {
+					return;
+				}
+			} else if (value == PRE_COMMENT_START || value == POST_COMMENT_START) {
+				out.writeByte(value == PRE_COMMENT_START ? TOKEN_PRE_COMMENT : TOKEN_POST_COMMENT);
+				GameCodec.writeString(out, getComment(index));
+				index += COMMENT_NODES - 1;
+			} else if (isNagValue(value)) {
+				out.writeByte(TOKEN_NAG);
+				out.writeByte(getNagForValue(value));
+			} else if (isMoveValue(value)) {
+				int moveIndex = tracker.getMoveIndex(value);
+				if (moveIndex >= 0) {
+					out.writeByte(moveIndex);
+				} else {
+					out.writeByte(TOKEN_MOVE);
+					out.writeShort(value);
+				}
+				tracker.doMove(value);
+			}
+		}
+	}
+
+	/*
+	 * Replaces the nodes by those read from in, see writeNodes. If the moves were
+	 * written as indices, position must be the start position of the game. The
+	 * position is changed.
+	 */
+	void readNodes(DataInput in, MoveablePosition position) throws IOException {
+		clear();
+		LineTracker tracker = new LineTracker(position);
+		int index = 1;
+		for (;;) {
+			if (index + COMMENT_NODES >= nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+			}
+			int token = in.readUnsignedByte();
+			if (token <= MAX_MOVE_INDEX) {
+				short move = tracker.getMove(token);
+				tracker.doMove(move);
+				nodes[index++] = move;
+				continue;
+			}
+			switch (token) {
+			case TOKEN_MOVE -> {
+				short move = in.readShort();
+				if (!isMoveValue(move)) {
+					throw new IOException("GameMoveModel::readNodes: illegal move value " + move);
+				}
+				tracker.doMove(move);
+				nodes[index++] = move;
+			}
+			case TOKEN_LINE_START -> {
+				tracker.lineStarted();
+				nodes[index++] = LINE_START;
+			}
+			case TOKEN_LINE_END -> {
+				nodes[index++] = LINE_END;
+				if (!tracker.lineEnded()) {
+					size = index;
+					changed();
+					return;
+				}
+			}
+			case TOKEN_PRE_COMMENT, TOKEN_POST_COMMENT -> {
+				String comment = GameCodec.readString(in);
+				if (token == TOKEN_PRE_COMMENT) {
+					setComment(index, PRE_COMMENT_START, PRE_COMMENT_END, comment);
+				} else {
+					setComment(index, POST_COMMENT_START, POST_COMMENT_END, comment);
+				}
+				index += COMMENT_NODES;
+			}
+			case TOKEN_NAG -> nodes[index++] = getValueForNag((short) in.readUnsignedByte());
+			default -> throw new IOException("GameMoveModel::readNodes: illegal token " + token);
+			}
+		}
+	}
+
+	/*
+	 * Follows the lines of the nodes in the order of the nodes, and keeps the
+	 * position (if any) at the current node.
+	 */
+	private static final class LineTracker {
+		private final MoveablePosition position;
+		private final short[] legalMoves;
+		private short[] lastMoves = new short[8]; // per open line, its last move
+		private int[] numOfMoves = new int[8]; // per open line, its number of moves
+		private int level; // the main line has level 0
+
+		private LineTracker(MoveablePosition position) {
+			this.position = position;
+			this.legalMoves = position == null ? null : new short[MoveablePosition.MAX_NUMBER_OF_MOVES];
+		}
+
+		// Returns the index of move in the sorted legal moves, or -1.
+		private int getMoveIndex(short move) {
+			if (position == null) {
+				return -1;
+			}
+			int num = getSortedLegalMoves();
+			int moveIndex = Arrays.binarySearch(legalMoves, 0, num, move);
+			return moveIndex <= MAX_MOVE_INDEX ? moveIndex : -1;
+		}
+
+		private short getMove(int moveIndex) throws IOException {
+			if (position == null) {
+				throw new IOException("GameMoveModel::readNodes: move index without position");
+			}
+			if (moveIndex >= getSortedLegalMoves()) {
+				throw new IOException("GameMoveModel::readNodes: illegal move index " + moveIndex);
+			}
+			return legalMoves[moveIndex];
+		}
+
+		// The order of the move generator may change, the sorted order doesn't.
+		private int getSortedLegalMoves() {
+			int num = position.getAllMoves(legalMoves);
+			Arrays.sort(legalMoves, 0, num);
+			return num;
+		}
+
+		private void doMove(short move) throws IOException {
+			if (position != null) {
+				try {
+					position.doMove(move);
+				} catch (IllegalMoveException _) {
+					throw new IOException("GameMoveModel::LineTracker: illegal move " + Move.getString(move));
+				}
+			}
+			lastMoves[level] = move;
+			++numOfMoves[level];
+		}
+
+		// A line is an alternative to the last move of the current line.
+		private void lineStarted() throws IOException {
+			if (numOfMoves[level] == 0) {
+				throw new IOException("GameMoveModel::LineTracker: line without a preceding move");
+			}
+			if (position != null) {
+				position.undoMove();
+			}
+			if (++level == numOfMoves.length) {
+				lastMoves = Arrays.copyOf(lastMoves, 2 * level);
+				numOfMoves = Arrays.copyOf(numOfMoves, 2 * level);
+			}
+			numOfMoves[level] = 0;
+		}
+
+		// Returns false for the end of the main line.
+		private boolean lineEnded() throws IOException {
+			if (level == 0) {
+				return false;
+			}
+			if (position != null) {
+				for (int i = 0; i < numOfMoves[level]; ++i) {
+					position.undoMove();
+				}
+			}
+			--level;
+			if (position != null) {
+				try {
+					position.doMove(lastMoves[level]);
+				} catch (IllegalMoveException _) {
+					throw new IOException("GameMoveModel::LineTracker: illegal move " + Move.getString(lastMoves[level]));
+				}
+			}
+			return true;
+		}
+	}
+
 	// ======================================================================
 
 	static String valueToString(short value) {
@@ -1427,24 +1828,16 @@ final class GameMoveModel implements Comparable<GameMoveModel>, Serializable {
 	}
 
 	void write(PrintStream out) {
-		boolean inComment = false;
 		for (int i = 0; i < size; i++) {
 			short move = nodes[i];
-			if (move == PRE_COMMENT_END || move == POST_COMMENT_END) {
-				inComment = false;
-			}
-			if (inComment) {
-				out.print((char) move);
-			} else {
-				out.print(valueToString(nodes[i]));
-				out.print(" ");
+			out.print(valueToString(move));
+			if (move == PRE_COMMENT_START || move == POST_COMMENT_START) {
+				out.print(getComment(i));
 			}
+			out.print(" ");
 			if ((i % 20) == 19) {
 				out.println();
 			}
-			if (move == PRE_COMMENT_START || move == POST_COMMENT_START) {
-				inComment = true;
-			}
 		}
 		out.println();
 	}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.game;
+
+import java.util.Arrays;
+
+import chesspresso.Variant;
+import chesspresso.position.CompactPosition;
+import chesspresso.position.ImmutablePosition;
+import chesspresso.position.Position;
+
+/**
+ * A cache of positions of a game keyed by node index. A checkpoint is stored
+ * for the root and for every node whose ply is a multiple of {@link #INTERVAL}
+ * as a {@link CompactPosition} of 40 bytes in an array indexed by node, so the
+ * memory per game grows linearly with its size. A checkpoint has no history:
+ * the moves before a restored checkpoint cannot be undone by the position, so
+ * the game goes back from there by restoring the checkpoint before. To reach a
+ * node, the game restores the nearest checkpoint above the node and replays at
+ * most <code>INTERVAL</code> moves. The root is always available, so no node
+ * needs the history of the position.
+ * 
+ * <p>
+ * The checkpoints of the nodes are discarded whenever the move model is changed
+ * (see {@link GameMoveModel#getModCount()}), the ply offset of the game changes
+ * or the position becomes a Chess960 position. The root is kept, until the
+ * game gets a new start position.
+ *
+ * @author Thomas Niessen
+ */
+final class PositionCheckpoints {
+
+	static final int INTERVAL = 16;
+
+	private static final CompactPosition[] NO_CHECKPOINTS = new CompactPosition[0];
+
+	private CompactPosition root;
+	private CompactPosition[] checkpoints; // indexed by node, null for no checkpoint
+	private int modCount;
+	private int plyOffset;
+	private int restoredPly = -1; // the ply number of the last restored checkpoint other than the root
+
+	/**
+	 * @param root the start position of the game
+	 */
+	PositionCheckpoints(ImmutablePosition root) {
+		this.root = new CompactPosition(root);
+		checkpoints = NO_CHECKPOINTS;
+		modCount = -1;
+		plyOffset = root.getPlyOffset();
+	}
+
+	/**
+	 * Discards the checkpoints of the nodes, if the move model or the ply offset
+	 * has changed since the last call. If the position has become a Chess960
+	 * position, the root is updated.
+	 */
+	void validate(GameMoveModel moveModel, ImmutablePosition position) {
+		if (position.getVariant() == Variant.CHESS960 && (root.getVariant() != Variant.CHESS960
+				|| root.getChess960KingFile() != position.getChess960KingFile()
+				|| root.getChess960QueensideRookFile() != position.getChess960QueensideRookFile()
+				|| root.getChess960KingsideRookFile() != position.getChess960KingsideRookFile())) {
+			Position start = root.toPosition();
+			start.setChess960();
+			start.setChess960CastlingFiles(position.getChess960KingFile(), position.getChess960QueensideRookFile(),
+					position.getChess960KingsideRookFile());
+			root = new CompactPosition(start);
+			modCount = -1;
+		}
+		if (moveModel.getModCount() != modCount || position.getPlyOffset() != plyOffset) {
+			checkpoints = NO_CHECKPOINTS;
+			modCount = moveModel.getModCount();
+			plyOffset = position.getPlyOffset();
+		}
+	}
+
+	static boolean isCheckpointPly(int ply) {
+		return ply % INTERVAL == 0;
+	}
+
+	/**
+	 * Returns a new position at the root with the given ply offset.
+	 */
+	Position createRoot(int offset) {
+		Position start = new Position(root);
+		start.setPlyOffset(offset);
+		return start;
+	}
+
+	boolean has(int node) {
+		return node == 0 || (node < checkpoints.length && checkpoints[node] != null);
+	}
+
+	/**
+	 * Sets the position to the checkpoint of the node. The root is restored with
+	 * the current ply offset; after any other checkpoint the position cannot undo
+	 * the moves before it, see {@link Position#restorePositionSnapshot}.
+	 */
+	void restore(int node, Position position) {
+		if (node == 0) {
+			int offset = position.getPlyOffset();
+			position.setPositionSnapshot(root);
+			position.setPlyOffset(offset);
+			restoredPly = -1;
+		} else {
+			position.restorePositionSnapshot(checkpoints[node]);
+			restoredPly = checkpoints[node].getPlyNumber();
+		}
+	}
+
+	/**
+	 * Returns whether the history of the position starts at a restored checkpoint
+	 * and undoing the last move would reach that start, so that the position
+	 * would have no last move afterwards.
+	 */
+	boolean reachesHistoryStart(ImmutablePosition position) {
+		return position.getPlyNumber() <= restoredPly + 1;
+	}
+
+	void put(int node, ImmutablePosition position) {
+		if (node == 0) {
+			return;
+		}
+		if (node >= checkpoints.length) {
+			checkpoints = Arrays.copyOf(checkpoints, Math.max(node + 1, 2 * checkpoints.length));
+		}
+		if (checkpoints[node] == null) {
+			checkpoints[node] = new CompactPosition(position);
+		}
+	}
+}
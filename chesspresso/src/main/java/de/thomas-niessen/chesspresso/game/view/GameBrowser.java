@@ -316,10 +316,14 @@ public class GameBrowser extends JPanel implements PositionMotionListener, Posit
 		try {
 			Position pos = game.getPosition();
 			int row = Chess.sqiToRow(to);
+			short move;
 			if (pos.getPiece(from) == Chess.PAWN && (row == 0 || row == 7)) {
-				pos.doMove(pos.getMove(from, to, Chess.QUEEN));
+				move = pos.getMove(from, to, Chess.QUEEN);
 			} else {
-				pos.doMove(pos.getMove(from, to, Chess.NO_PIECE));
+				move = pos.getMove(from, to, Chess.NO_PIECE);
+			}
+			if (pos.isLegal(move)) {
+				pos.doMove(move);
 			}
 			// TN: This code is not complete, because underpromotions are not possible.
 		} catch (IllegalMoveException _) {
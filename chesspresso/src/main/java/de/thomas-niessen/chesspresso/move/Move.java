@@ -569,36 +569,57 @@ public class Move implements Serializable {
 		if (!isValid()) {
 			return "<illegal move>";
 		} else {
-			StringBuilder sb = new StringBuilder();
-			if (isShortCastle() || isShortCastleChess960()) {
-				sb.append(SHORT_CASTLE_STRING);
-			} else if (isLongCastle() || isLongCastleChess960()) {
-				sb.append(LONG_CASTLE_STRING);
-			} else if (isNullMove()) {
-				sb.append(NULL_MOVE_STRING);
-			} else {
-				int piece = getMovingPiece();
-				if (piece == Chess.NO_PIECE) {
-					System.out.println(
-							"Move::getLAN: unexpected NO_PIECE for " + move + " " + info + " " + Integer.toBinaryString(info));
-				}
-				if (piece != Chess.PAWN) {
-					sb.append(Chess.pieceToChar(piece));
-				}
-				sb.append(Chess.sqiToStr(getFromSqi()));
-				sb.append(isCapturing() ? "x" : "-");
-				sb.append(Chess.sqiToStr(getToSqi()));
-				if (isPromotion()) {
-					sb.append('=').append(Chess.pieceToChar(getPromotionPiece()));
-				}
+			StringBuilder sb = new StringBuilder(8);
+			appendLAN(sb);
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Appends the LAN (long annotation, see PGN spec) of the move, e.g. Ne2xf4+,
+	 * to <code>sb</code>.
+	 *
+	 * @param sb the StringBuilder
+	 */
+	public void appendLAN(StringBuilder sb) {
+		if (getMovingPiece() == Chess.NO_PIECE && isValid() && !isCastle() && !isCastleChess960() && !isNullMove()) {
+			System.out.println("Move::getLAN: unexpected NO_PIECE for " + move + " " + info + " " + Integer.toBinaryString(info));
+		}
+		appendLAN(sb, move, getMovingPiece(), isCheck(), isMate());
+	}
+
+	/**
+	 * Appends the LAN of a move, e.g. Ne2xf4+, to <code>sb</code>.
+	 *
+	 * @param sb          the StringBuilder
+	 * @param move        the short move
+	 * @param movingPiece the piece moving
+	 * @param isCheck     whether the move gives a check
+	 * @param isMate      whether the move sets mate
+	 */
+	public static void appendLAN(StringBuilder sb, short move, int movingPiece, boolean isCheck, boolean isMate) {
+		if (!isValid(move)) {
+			sb.append("<illegal move>");
+			return;
+		}
+		if (isShortCastle(move) || isShortCastleChess960(move)) {
+			sb.append(SHORT_CASTLE_STRING);
+		} else if (isLongCastle(move) || isLongCastleChess960(move)) {
+			sb.append(LONG_CASTLE_STRING);
+		} else if (isNullMove(move)) {
+			sb.append(NULL_MOVE_STRING);
+		} else {
+			if (movingPiece != Chess.PAWN) {
+				sb.append(Chess.pieceToChar(movingPiece));
 			}
-			if (isMate()) {
-				sb.append('#');
-			} else if (isCheck()) {
-				sb.append('+');
+			appendSquare(sb, getFromSqi(move));
+			sb.append(isCapturing(move) ? 'x' : '-');
+			appendSquare(sb, getToSqi(move));
+			if (isPromotion(move)) {
+				sb.append('=').append(Chess.pieceToChar(getPromotionPiece(move)));
 			}
-			return sb.toString();
 		}
+		appendCheck(sb, isCheck, isMate);
 	}
 
 	/**
@@ -610,42 +631,80 @@ public class Move implements Serializable {
 		if (!isValid()) {
 			return "<illegal move>";
 		} else {
-			StringBuilder sb = new StringBuilder();
-			if (isShortCastle() || isShortCastleChess960()) {
-				sb.append(SHORT_CASTLE_STRING);
-			} else if (isLongCastle() || isLongCastleChess960()) {
-				sb.append(LONG_CASTLE_STRING);
-			} else if (isNullMove()) {
-				sb.append(NULL_MOVE_STRING);
-			} else {
-				int piece = getMovingPiece();
-				if (piece == Chess.NO_PIECE) {
-					System.out.println(
-							"Move::getSAN: unexpected NO_PIECE for " + move + " " + info + " " + Integer.toBinaryString(info));
-				}
-				if (piece != Chess.PAWN) {
-					sb.append(Chess.pieceToChar(piece));
-				}
-				if (getColFrom() != Chess.NO_COL) {
-					sb.append(Chess.colToChar(getColFrom()));
-				}
-				if (getRowFrom() != Chess.NO_ROW) {
-					sb.append(Chess.rowToChar(getRowFrom()));
-				}
-				if (isCapturing()) {
-					sb.append("x");
-				}
-				sb.append(Chess.sqiToStr(getToSqi()));
-				if (isPromotion()) {
-					sb.append('=').append(Chess.pieceToChar(getPromotionPiece()));
-				}
+			StringBuilder sb = new StringBuilder(8);
+			appendSAN(sb);
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Appends the SAN (short annotation, see PGN spec) of the move, e.g. Nxf4+, to
+	 * <code>sb</code>.
+	 *
+	 * @param sb the StringBuilder
+	 */
+	public void appendSAN(StringBuilder sb) {
+		if (getMovingPiece() == Chess.NO_PIECE && isValid() && !isCastle() && !isCastleChess960() && !isNullMove()) {
+			System.out.println("Move::getSAN: unexpected NO_PIECE for " + move + " " + info + " " + Integer.toBinaryString(info));
+		}
+		appendSAN(sb, move, getMovingPiece(), getColFrom(), getRowFrom(), isCheck(), isMate());
+	}
+
+	/**
+	 * Appends the SAN of a move, e.g. Nxf4+, to <code>sb</code>.
+	 *
+	 * @param sb          the StringBuilder
+	 * @param move        the short move
+	 * @param movingPiece the piece moving
+	 * @param colFrom     file if should be taken for SAN, <code>NO_COL</code>
+	 *                    otherwise
+	 * @param rowFrom     rank if should be taken for SAN, <code>NO_ROW</code>
+	 *                    otherwise
+	 * @param isCheck     whether the move gives a check
+	 * @param isMate      whether the move sets mate
+	 */
+	public static void appendSAN(StringBuilder sb, short move, int movingPiece, int colFrom, int rowFrom, boolean isCheck,
+			boolean isMate) {
+		if (!isValid(move)) {
+			sb.append("<illegal move>");
+			return;
+		}
+		if (isShortCastle(move) || isShortCastleChess960(move)) {
+			sb.append(SHORT_CASTLE_STRING);
+		} else if (isLongCastle(move) || isLongCastleChess960(move)) {
+			sb.append(LONG_CASTLE_STRING);
+		} else if (isNullMove(move)) {
+			sb.append(NULL_MOVE_STRING);
+		} else {
+			if (movingPiece != Chess.PAWN) {
+				sb.append(Chess.pieceToChar(movingPiece));
 			}
-			if (isMate()) {
-				sb.append('#');
-			} else if (isCheck()) {
-				sb.append('+');
+			if (colFrom != Chess.NO_COL) {
+				sb.append(Chess.colToChar(colFrom));
 			}
-			return sb.toString();
+			if (rowFrom != Chess.NO_ROW) {
+				sb.append(Chess.rowToChar(rowFrom));
+			}
+			if (isCapturing(move)) {
+				sb.append('x');
+			}
+			appendSquare(sb, getToSqi(move));
+			if (isPromotion(move)) {
+				sb.append('=').append(Chess.pieceToChar(getPromotionPiece(move)));
+			}
+		}
+		appendCheck(sb, isCheck, isMate);
+	}
+
+	private static void appendSquare(StringBuilder sb, int sqi) {
+		sb.append(Chess.colToChar(Chess.sqiToCol(sqi))).append(Chess.rowToChar(Chess.sqiToRow(sqi)));
+	}
+
+	private static void appendCheck(StringBuilder sb, boolean isCheck, boolean isMate) {
+		if (isMate) {
+			sb.append('#');
+		} else if (isCheck) {
+			sb.append('+');
 		}
 	}
 
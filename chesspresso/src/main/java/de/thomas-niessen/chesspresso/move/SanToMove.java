@@ -148,9 +148,12 @@ public class SanToMove {
 					}
 					last--;
 				}
-				move = position.getPieceMove(piece, col, row, toSqi);
+				return position.getPieceMove(piece, col, row, toSqi); // legal or ILLEGAL_MOVE
 			}
 		}
+		if (!Move.isNullMove(move) && !position.isLegal(move)) {
+			return Move.ILLEGAL_MOVE;
+		}
 		return move;
 	}
 }
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.perft;
+
+import java.io.Serial;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import chesspresso.Chess960;
+import chesspresso.move.IllegalMoveException;
+import chesspresso.position.InvalidFenException;
+import chesspresso.position.MoveablePosition;
+import chesspresso.position.Position;
+
+/**
+ * Perft (performance test) counts the leaf nodes of the legal move tree of a
+ * position up to a given depth. The numbers are well-known for many positions,
+ * so perft is the standard regression test for a move generator and, measured
+ * in nodes per second, a reference for its throughput.
+ * 
+ * <p>
+ * The implementation uses bulk counting: at depth 1 the number of legal moves
+ * is returned without doing them. Optionally, subtree counts can be stored in a
+ * {@link PerftCache}. The parallel version splits the tree at the root moves
+ * and runs one task per root move on a {@link ForkJoinPool}; each task works on
+ * its own copy of the position.
+ * 
+ * <p>
+ * The position passed to the methods of this class is restored before the
+ * methods return.
+ *
+ * @author Thomas Niessen
+ */
+public final class Perft {
+
+	private Perft() {
+	}
+
+	/**
+	 * Creates a position for perft from a FEN.
+	 *
+	 * @param fen the FEN
+	 * @return the position
+	 * @throws InvalidFenException if the FEN is invalid
+	 */
+	public static Position createPosition(String fen) throws InvalidFenException {
+		return new Position(fen, false);
+	}
+
+	/**
+	 * Creates the Chess960 start position with the given number.
+	 *
+	 * @param posNumber the number of the start position, see
+	 *                  {@link Chess960#getFEN(int)}
+	 * @return the position
+	 */
+	public static Position createChess960Position(int posNumber) {
+		try {
+			return new Position(Chess960.getFEN(posNumber), false);
+		} catch (InvalidFenException e) {
+			throw new IllegalArgumentException("Perft::createChess960Position: invalid position number " + posNumber, e);
+		}
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	/**
+	 * Counts the leaf nodes of the legal move tree of the given depth.
+	 *
+	 * @param position the position
+	 * @param depth    the depth, at least 0
+	 * @return the number of leaf nodes
+	 */
+	public static long perft(MoveablePosition position, int depth) {
+		return perft(position, depth, null);
+	}
+
+	/**
+	 * Counts the leaf nodes of the legal move tree of the given depth and uses
+	 * the cache for subtrees.
+	 *
+	 * @param position the position
+	 * @param depth    the depth, at least 0
+	 * @param cache    the cache, may be null
+	 * @return the number of leaf nodes
+	 */
+	public static long perft(MoveablePosition position, int depth, PerftCache cache) {
+		if (depth < 0) {
+			throw new IllegalArgumentException("Perft::perft: negative depth " + depth);
+		}
+		return count(position, depth, new short[depth + 1][MoveablePosition.MAX_NUMBER_OF_MOVES], cache);
+	}
+
+	/**
+	 * Counts the leaf nodes below each root move. This is the usual way to find
+	 * the move for which a move generator goes wrong.
+	 *
+	 * @param position the position
+	 * @param depth    the depth, at least 1
+	 * @return the numbers of leaf nodes by root move in the order of generation
+	 */
+	public static Map<Short, Long> divide(MoveablePosition position, int depth) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Perft::divide: depth must be at least 1, found " + depth);
+		}
+		short[][] buffers = new short[depth][MoveablePosition.MAX_NUMBER_OF_MOVES];
+		short[] rootMoves = position.getAllMoves();
+		Map<Short, Long> result = new LinkedHashMap<>();
+		for (short move : rootMoves) {
+			doMove(position, move);
+			result.put(move, count(position, depth - 1, buffers, null));
+			position.undoMove();
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the leaf nodes in parallel in the common {@link ForkJoinPool}.
+	 *
+	 * @param position the position
+	 * @param depth    the depth, at least 0
+	 * @param cache    the cache, may be null; it is shared by all tasks
+	 * @return the number of leaf nodes
+	 */
+	public static long parallelPerft(MoveablePosition position, int depth, PerftCache cache) {
+		return parallelPerft(position, depth, cache, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Counts the leaf nodes in parallel. The tree is split at the root moves,
+	 * each root move is counted by a task which works on its own copy of the
+	 * position.
+	 *
+	 * @param position the position
+	 * @param depth    the depth, at least 0
+	 * @param cache    the cache, may be null; it is shared by all tasks
+	 * @param pool     the pool in which the tasks are run
+	 * @return the number of leaf nodes
+	 */
+	public static long parallelPerft(MoveablePosition position, int depth, PerftCache cache, ForkJoinPool pool) {
+		if (depth < 0) {
+			throw new IllegalArgumentException("Perft::parallelPerft: negative depth " + depth);
+		}
+		if (depth <= 1) {
+			return perft(position, depth, cache);
+		}
+		Position root = new Position();
+		root.copyFrom(position, false);
+		return pool.invoke(new RootTask(root, depth, cache));
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	private static long count(MoveablePosition position, int depth, short[][] buffers, PerftCache cache) {
+		if (depth == 0) {
+			return 1L;
+		}
+		long hashCode = 0L;
+		if (cache != null && depth > 1) {
+			hashCode = position.getHashCode();
+			long nodes = cache.get(hashCode, depth);
+			if (nodes >= 0L) {
+				return nodes;
+			}
+		}
+
+		short[] moves = buffers[depth];
+		int numberOfMoves = position.getAllMoves(moves);
+		if (depth == 1) { // bulk counting
+			return numberOfMoves;
+		}
+
+		long nodes = 0L;
+		for (int index = 0; index < numberOfMoves; ++index) {
+			doMove(position, moves[index]);
+			nodes += count(position, depth - 1, buffers, cache);
+			position.undoMove();
+		}
+
+		if (cache != null) {
+			cache.put(hashCode, depth, nodes);
+		}
+		return nodes;
+	}
+
+	private static void doMove(MoveablePosition position, short move) {
+		try {
+			position.doMove(move);
+		} catch (IllegalMoveException e) {
+			// the moves are generated by the position itself
+			throw new IllegalStateException("Perft: generated move cannot be done: " + position.getFEN(), e);
+		}
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	private static class RootTask extends RecursiveTask<Long> {
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		private final transient Position position;
+		private final int depth;
+		private final transient PerftCache cache;
+
+		private RootTask(Position position, int depth, PerftCache cache) {
+			this.position = position;
+			this.depth = depth;
+			this.cache = cache;
+		}
+
+		@Override
+		protected Long compute() {
+			short[] rootMoves = position.getAllMoves();
+			MoveTask[] tasks = new MoveTask[rootMoves.length];
+			for (int index = 0; index < rootMoves.length; ++index) {
+				Position copy = position.copy(false);
+				doMove(copy, rootMoves[index]);
+				tasks[index] = new MoveTask(copy, depth - 1, cache);
+			}
+			invokeAll(tasks);
+			long nodes = 0L;
+			for (MoveTask task : tasks) {
+				nodes += task.join();
+			}
+			return nodes;
+		}
+	}
+
+	private static class MoveTask extends RecursiveTask<Long> {
+		@Serial
+		private static final long serialVersionUID = 1L;
+
+		private final transient Position position;
+		private final int depth;
+		private final transient PerftCache cache;
+
+		private MoveTask(Position position, int depth, PerftCache cache) {
+			this.position = position;
+			this.depth = depth;
+			this.cache = cache;
+		}
+
+		@Override
+		protected Long compute() {
+			return perft(position, depth, cache);
+		}
+	}
+}
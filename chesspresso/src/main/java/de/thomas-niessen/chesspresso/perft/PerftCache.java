@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.perft;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import chesspresso.position.AbstractPosition;
+
+/**
+ * A fixed-size cache for perft subtree counts, keyed by the Zobrist hash code
+ * of a position and the depth of the subtree.
+ * 
+ * <p>
+ * The cache can be shared by several threads without locking. Each entry
+ * consists of two longs, the key xor the count and the count. An entry is only
+ * accepted if both parts fit together, so an entry which is written by two
+ * threads at the same time is never mistaken for a valid entry. Entries are
+ * always replaced.
+ *
+ * @author Thomas Niessen
+ */
+public final class PerftCache {
+
+	private static final long DEPTH_MULT = 0x9E3779B97F4A7C15L;
+
+	private final AtomicLongArray entries;
+	private final int mask;
+
+	/**
+	 * Creates a cache with at least the given number of entries (rounded up to a
+	 * power of two). Each entry takes 16 bytes.
+	 *
+	 * @param numberOfEntries the minimal number of entries
+	 */
+	public PerftCache(int numberOfEntries) {
+		if (numberOfEntries <= 0 || numberOfEntries > (1 << 29)) {
+			throw new IllegalArgumentException("PerftCache: illegal number of entries " + numberOfEntries);
+		}
+		int size = Integer.highestOneBit(numberOfEntries);
+		if (size < numberOfEntries) {
+			size <<= 1;
+		}
+		entries = new AtomicLongArray(2 * size);
+		mask = size - 1;
+	}
+
+	/**
+	 * Returns the stored count.
+	 *
+	 * @param hashCode the hash code of the position
+	 * @param depth    the depth of the subtree
+	 * @return the count, or -1 if there is no entry
+	 */
+	public long get(long hashCode, int depth) {
+		long key = getKey(hashCode, depth);
+		int index = 2 * (int) (key & mask);
+		long check = entries.getOpaque(index);
+		long count = entries.getOpaque(index + 1);
+		return (check ^ count) == key && count > 0L ? count : -1L;
+	}
+
+	/**
+	 * Stores a count.
+	 *
+	 * @param hashCode the hash code of the position
+	 * @param depth    the depth of the subtree
+	 * @param count    the number of leaf nodes of the subtree
+	 */
+	public void put(long hashCode, int depth, long count) {
+		long key = getKey(hashCode, depth);
+		int index = 2 * (int) (key & mask);
+		entries.setOpaque(index, key ^ count);
+		entries.setOpaque(index + 1, count);
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		for (int index = 0; index < entries.length(); ++index) {
+			entries.setOpaque(index, 0L);
+		}
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return mask + 1;
+	}
+
+	private static long getKey(long hashCode, int depth) {
+		return AbstractPosition.mixHashCode(hashCode ^ (depth * DEPTH_MULT));
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.perft;
+
+import java.io.PrintStream;
+
+import chesspresso.position.InvalidFenException;
+import chesspresso.position.Position;
+
+/**
+ * A collection of positions with well-known perft results. They cover
+ * castling, en passant (including discovered checks by en passant), promotions,
+ * pins and Chess960 castling. Running the suite is a regression test of the
+ * move generator, and the reported nodes per second are a reference for its
+ * throughput.
+ *
+ * @author Thomas Niessen
+ */
+public final class PerftSuite {
+
+	private PerftSuite() {
+	}
+
+	/**
+	 * A position with the expected perft results for the depths 1, 2, ...
+	 */
+	public record Entry(String name, String fen, long... expected) {
+	}
+
+	public static final Entry[] ENTRIES = { //
+			new Entry("Start position", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 20L, 400L, 8902L,
+					197281L, 4865609L),
+			new Entry("Kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 48L, 2039L, 97862L,
+					4085603L),
+			new Entry("En passant pins", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 14L, 191L, 2812L, 43238L, 674624L),
+			new Entry("Promotions", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 6L, 264L, 9467L,
+					422333L),
+			new Entry("Talkchess", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 44L, 1486L, 62379L,
+					2103487L),
+			new Entry("Middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 46L, 2079L,
+					89890L, 3894594L),
+			new Entry("Chess960 518", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w HAha - 0 1", 20L, 400L, 8902L, 197281L),
+			new Entry("Chess960 1", "bqnb1rkr/pp3ppp/3ppn2/2p5/5P2/P2P4/NPP1P1PP/BQ1BNRKR w HFhf - 2 9", 21L, 528L, 12189L,
+					326672L),
+			new Entry("Chess960 2", "2nnrbkr/p1qppppp/8/1ppb4/6PP/3PP3/PPP2P2/BQNNRBKR w HEhe - 1 9", 21L, 807L, 18002L,
+					667366L) };
+
+	/**
+	 * Runs all entries up to their maximal depth and prints the results.
+	 *
+	 * @param out      the stream for the results
+	 * @param parallel whether {@link Perft#parallelPerft} is used
+	 * @param cache    a cache, may be null
+	 * @return whether all results are as expected
+	 */
+	public static boolean run(PrintStream out, boolean parallel, PerftCache cache) {
+		boolean allPassed = true;
+		long totalNodes = 0L;
+		long totalNanos = 0L;
+		for (Entry entry : ENTRIES) {
+			Position position;
+			try {
+				position = Perft.createPosition(entry.fen());
+			} catch (InvalidFenException e) {
+				out.println(entry.name() + ": " + e.getMessage());
+				allPassed = false;
+				continue;
+			}
+			for (int depth = 1; depth <= entry.expected().length; ++depth) {
+				if (cache != null) {
+					cache.clear();
+				}
+				long start = System.nanoTime();
+				long nodes = parallel ? Perft.parallelPerft(position, depth, cache) : Perft.perft(position, depth, cache);
+				long nanos = System.nanoTime() - start;
+				totalNodes += nodes;
+				totalNanos += nanos;
+				long expected = entry.expected()[depth - 1];
+				if (nodes != expected) {
+					allPassed = false;
+				}
+				out.println(entry.name() + ", depth " + depth + ": " + nodes + (nodes == expected ? "" : " (expected " + expected + ")"));
+			}
+		}
+		out.println("Nodes: " + totalNodes + ", nodes per second: " + (totalNanos == 0L ? 0L : totalNodes * 1_000_000_000L / totalNanos));
+		return allPassed;
+	}
+
+	/**
+	 * Runs the suite. The argument "parallel" selects the parallel version; an
+	 * argument "cache" adds a cache with 2^20 entries.
+	 */
+	public static void main(String[] args) {
+		boolean parallel = false;
+		PerftCache cache = null;
+		for (String arg : args) {
+			if (arg.equals("parallel")) {
+				parallel = true;
+			} else if (arg.equals("cache")) {
+				cache = new PerftCache(1 << 20);
+			}
+		}
+		boolean allPassed = run(System.out, parallel, cache);
+		System.out.println(allPassed ? "All results are as expected." : "There are unexpected results.");
+		if (!allPassed) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,490 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.pgn;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import chesspresso.game.Game;
+import chesspresso.pgn.PGNSyntaxError.Severity;
+
+/**
+ * Reader for large PGN files which parses games on several threads. The input
+ * is read sequentially and cut into chunks of about {@link #setChunkSize(int)}
+ * bytes. A chunk ends in front of a game start, i.e. a tag line which does not
+ * follow another tag line (blank lines are ignored) and which is not inside a
+ * comment. The chunks are parsed by the executor (by default the common
+ * {@link ForkJoinPool}; e.g. {@link java.util.concurrent.Executors#newVirtualThreadPerTaskExecutor()}
+ * works as well), each chunk with its own {@link PGNReader}.
+ * 
+ * <p>
+ * The games and the errors and warnings are delivered on the calling thread of
+ * {@link #parseGames(Consumer)}, either in the order of the input or in the
+ * order in which the chunks are finished, see {@link #setOrdered(boolean)}.
+ * The errors and warnings of a chunk are delivered before its games, and their
+ * line numbers refer to the whole input. After an error, parsing continues with
+ * the next game start.
+ *
+ * @author Thomas Niessen
+ */
+public final class PGNParallelReader {
+
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	private final InputStream in;
+	private final String filename;
+	private final boolean closeInput;
+
+	private PGNErrorHandler errorHandler;
+	private boolean headless;
+	private boolean ordered;
+	private int chunkSize;
+	private Executor executor;
+	private int maxPendingChunks;
+
+	// ======================================================================
+
+	/**
+	 * Creates a reader for the stream, which is not closed by this reader.
+	 *
+	 * @param in   the PGN data in ISO-8859-1
+	 * @param name the name used in errors and warnings
+	 */
+	public PGNParallelReader(InputStream in, String name) {
+		this(in, name, false);
+	}
+
+	/**
+	 * Creates a reader for the file, which may be gzipped (extension ".gz").
+	 *
+	 * @param filename the file name
+	 * @throws IOException if the file cannot be opened
+	 */
+	public PGNParallelReader(String filename) throws IOException {
+		this(filename.toLowerCase().endsWith(".gz") ? new GZIPInputStream(new FileInputStream(filename))
+				: new FileInputStream(filename), filename, true);
+	}
+
+	private PGNParallelReader(InputStream in, String name, boolean closeInput) {
+		this.in = in;
+		this.filename = name;
+		this.closeInput = closeInput;
+		this.ordered = true;
+		this.chunkSize = DEFAULT_CHUNK_SIZE;
+		this.executor = ForkJoinPool.commonPool();
+		this.maxPendingChunks = 2 * Runtime.getRuntime().availableProcessors();
+	}
+
+	// ======================================================================
+
+	/**
+	 * Sets the handler for errors and warnings. It is called on the thread which
+	 * calls {@link #parseGames(Consumer)}.
+	 */
+	public void setErrorHandler(PGNErrorHandler handler) {
+		errorHandler = handler;
+	}
+
+	/**
+	 * Sets whether headless games are created, see {@link Game#createHeadless()}.
+	 */
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+	}
+
+	/**
+	 * Sets whether the games are delivered in the order of the input (the
+	 * default), or as soon as their chunk is parsed.
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Sets the minimum size of a chunk in bytes; a chunk is extended to the next
+	 * game start. The default is 1 MB.
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("PGNParallelReader::setChunkSize: illegal size " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Sets the executor which parses the chunks. The default is the common
+	 * {@link ForkJoinPool}.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets how many chunks may be read ahead of the delivered games; this bounds
+	 * the memory used for the input. The default is twice the number of
+	 * processors.
+	 */
+	public void setMaxPendingChunks(int maxPendingChunks) {
+		if (maxPendingChunks <= 0) {
+			throw new IllegalArgumentException("PGNParallelReader::setMaxPendingChunks: illegal number " + maxPendingChunks);
+		}
+		this.maxPendingChunks = maxPendingChunks;
+	}
+
+	// ======================================================================
+
+	/**
+	 * Parses all games of the input and passes them to the consumer, on the
+	 * calling thread.
+	 *
+	 * @param consumer the consumer of the games
+	 * @throws IOException if the input cannot be read
+	 */
+	public void parseGames(Consumer<? super Game> consumer) throws IOException {
+		BlockingQueue<ChunkResult> finished = new LinkedBlockingQueue<>();
+		Map<Integer, ChunkResult> waiting = new HashMap<>(); // finished, but not yet delivered (ordered mode)
+		int numOfSubmitted = 0;
+		int numOfDelivered = 0;
+		try {
+			ChunkScanner scanner = new ChunkScanner(in, chunkSize);
+			Chunk chunk;
+			while ((chunk = scanner.nextChunk()) != null) {
+				while (numOfSubmitted - numOfDelivered >= maxPendingChunks) {
+					numOfDelivered += deliverNext(finished, waiting, numOfDelivered, consumer);
+				}
+				Chunk task = chunk;
+				int sequenceNumber = numOfSubmitted++;
+				executor.execute(() -> finished.add(parseChunk(task, sequenceNumber)));
+			}
+			while (numOfDelivered < numOfSubmitted) {
+				numOfDelivered += deliverNext(finished, waiting, numOfDelivered, consumer);
+			}
+		} finally {
+			if (closeInput) {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Parses all games of the input.
+	 *
+	 * @return the games
+	 * @throws IOException if the input cannot be read
+	 */
+	public List<Game> parseAllGames() throws IOException {
+		List<Game> games = new ArrayList<>();
+		parseGames(games::add);
+		return games;
+	}
+
+	// Waits for a finished chunk and delivers as many chunks as possible. Returns their number.
+	private int deliverNext(BlockingQueue<ChunkResult> finished, Map<Integer, ChunkResult> waiting, int numOfDelivered,
+			Consumer<? super Game> consumer) throws IOException {
+		ChunkResult result;
+		try {
+			result = finished.take();
+		} catch (InterruptedException _) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("PGNParallelReader::parseGames: interrupted");
+		}
+		if (!ordered) {
+			deliver(result, consumer);
+			return 1;
+		}
+		waiting.put(result.sequenceNumber, result);
+		int num = 0;
+		while ((result = waiting.remove(numOfDelivered + num)) != null) {
+			deliver(result, consumer);
+			++num;
+		}
+		return num;
+	}
+
+	private void deliver(ChunkResult result, Consumer<? super Game> consumer) {
+		if (result.failure instanceof RuntimeException e) {
+			throw e;
+		} else if (result.failure instanceof Error e) {
+			throw e;
+		}
+		if (errorHandler != null) {
+			for (PGNSyntaxError diagnostic : result.diagnostics) {
+				if (diagnostic.getSeverity() == Severity.ERROR) {
+					errorHandler.handleError(diagnostic);
+				} else {
+					errorHandler.handleWarning(diagnostic);
+				}
+			}
+		}
+		for (Game game : result.games) {
+			consumer.accept(game);
+		}
+	}
+
+	// ======================================================================
+
+	private ChunkResult parseChunk(Chunk chunk, int sequenceNumber) {
+		List<Game> games = new ArrayList<>();
+		List<PGNSyntaxError> diagnostics = new ArrayList<>();
+		PGNErrorHandler collector = new PGNErrorHandler() {
+			@Override
+			public void handleError(PGNSyntaxError error) {
+				diagnostics.add(error);
+			}
+
+			@Override
+			public void handleWarning(PGNSyntaxError warning) {
+				diagnostics.add(warning);
+			}
+		};
+		try {
+			int gameIndex = 0; // the game start where the current reader began
+			while (gameIndex < chunk.numOfGameStarts) {
+				LineNumberReader lineReader = chunk.getReader(gameIndex);
+				PGNReader reader = new PGNReader(lineReader, filename);
+				reader.setHeadless(headless);
+				reader.setErrorHandler(collector);
+				for (;;) {
+					int lineNumber = lineReader.getLineNumber() + 1;
+					try {
+						Game game = reader.parseGame();
+						if (game == null) {
+							gameIndex = chunk.numOfGameStarts;
+						} else {
+							games.add(game);
+							continue;
+						}
+					} catch (PGNSyntaxError error) {
+						if (diagnostics.isEmpty() || diagnostics.get(diagnostics.size() - 1) != error) {
+							diagnostics.add(error); // not all errors are passed to the error handler
+						}
+						// continue after the game which failed, i.e. the first game starting at or after lineNumber
+						gameIndex = chunk.getGameStartIndex(lineNumber, gameIndex) + 1;
+					}
+					break;
+				}
+			}
+			return new ChunkResult(sequenceNumber, games, diagnostics, null);
+		} catch (IOException | RuntimeException | Error e) {
+			return new ChunkResult(sequenceNumber, games, diagnostics,
+					e instanceof IOException ? new IllegalStateException(e) : e);
+		}
+	}
+
+	private record ChunkResult(int sequenceNumber, List<Game> games, List<PGNSyntaxError> diagnostics,
+			Throwable failure) {
+	}
+
+	// ======================================================================
+
+	/*
+	 * A part of the input, starting at a game start (except for the first
+	 * chunk). It knows the offsets and line numbers of its game starts, so that
+	 * parsing can continue after an error.
+	 */
+	private static final class Chunk {
+		private final String text;
+		private final int[] gameStartOffsets;
+		private final int[] gameStartLines;
+		private final int numOfGameStarts;
+
+		private Chunk(String text, int[] gameStartOffsets, int[] gameStartLines, int numOfGameStarts) {
+			this.text = text;
+			this.gameStartOffsets = gameStartOffsets;
+			this.gameStartLines = gameStartLines;
+			this.numOfGameStarts = numOfGameStarts;
+		}
+
+		private LineNumberReader getReader(int gameIndex) throws IOException {
+			StringReader reader = new StringReader(text);
+			reader.skip(gameStartOffsets[gameIndex]);
+			LineNumberReader lineReader = new LineNumberReader(reader);
+			lineReader.setLineNumber(gameStartLines[gameIndex] - 1); // PGNReader counts from 1
+			return lineReader;
+		}
+
+		// Returns the index of the first game start at or after the line, but at least minIndex.
+		private int getGameStartIndex(int lineNumber, int minIndex) {
+			int index = minIndex;
+			while (index + 1 < numOfGameStarts && gameStartLines[index] < lineNumber) {
+				++index;
+			}
+			return index;
+		}
+	}
+
+	/*
+	 * Cuts the input into chunks. Works on bytes, since ISO-8859-1 maps them 1:1
+	 * to chars. Line ends are counted like LineNumberReader does.
+	 */
+	private static final class ChunkScanner {
+		private final InputStream in;
+		private final int chunkSize;
+		private final byte[] buffer;
+		private int bufferPos;
+		private int bufferLimit;
+		private byte[] bytes;
+		private int size;
+		private int[] gameStartOffsets;
+		private int[] gameStartLines;
+		private int numOfGameStarts;
+
+		private int lineNumber; // of the current line, counted from 1
+		private int chunkLineNumber; // of the first line of the current chunk
+		private boolean atLineStart;
+		private boolean lastWasCR;
+		private boolean isTagLine; // the current line
+		private boolean isCommentLine; // the current line, starting with a line comment or an escape
+		private boolean lastLineWasTag; // the last line which is neither blank nor a comment line
+		private boolean inComment;
+		private boolean inLineComment;
+		private boolean eof;
+
+		private ChunkScanner(InputStream in, int chunkSize) {
+			this.in = in;
+			this.chunkSize = chunkSize;
+			this.buffer = new byte[1 << 16];
+			this.bytes = new byte[chunkSize + 4096];
+			this.gameStartOffsets = new int[64];
+			this.gameStartLines = new int[64];
+			this.lineNumber = 1;
+			this.chunkLineNumber = 1;
+			this.atLineStart = true;
+		}
+
+		private Chunk nextChunk() throws IOException {
+			if (eof) {
+				return null;
+			}
+			for (;;) {
+				int b = read();
+				if (b < 0) {
+					eof = true;
+					return size == 0 ? null : cut();
+				}
+				if (atLineStart && b == '[' && !inComment && !lastLineWasTag) {
+					if (size >= chunkSize) {
+						Chunk chunk = cut();
+						addGameStart();
+						append(b);
+						isTagLine = true;
+						atLineStart = false;
+						return chunk;
+					}
+					addGameStart();
+				}
+				scan(b);
+				append(b);
+			}
+		}
+
+		private int read() throws IOException {
+			if (bufferPos == bufferLimit) {
+				bufferLimit = in.read(buffer);
+				bufferPos = 0;
+				if (bufferLimit <= 0) {
+					bufferLimit = 0;
+					return -1;
+				}
+			}
+			return buffer[bufferPos++] & 0xFF;
+		}
+
+		private void scan(int b) {
+			if (b == '\n' || b == '\r') {
+				if (b == '\r' || !lastWasCR) {
+					++lineNumber;
+				}
+				lastWasCR = b == '\r';
+				if (!atLineStart && !isCommentLine) {
+					lastLineWasTag = isTagLine;
+				}
+				atLineStart = true;
+				isTagLine = false;
+				isCommentLine = false;
+				inLineComment = false;
+				return;
+			}
+			lastWasCR = false;
+			if (b <= ' ') {
+				return;
+			}
+			if (atLineStart) {
+				atLineStart = false;
+				isTagLine = b == '[' && !inComment;
+				isCommentLine = (b == PGN.TOK_LINE_COMMENT || b == PGN.TOK_PGN_ESCAPE) && !inComment;
+			}
+			if (inComment) {
+				inComment = b != '}';
+			} else if (!isTagLine && !inLineComment) {
+				if (b == '{') {
+					inComment = true;
+				} else if (b == PGN.TOK_LINE_COMMENT) {
+					inLineComment = true;
+				}
+			}
+		}
+
+		private void append(int b) {
+			if (size == bytes.length) {
+				bytes = Arrays.copyOf(bytes, 2 * size);
+			}
+			bytes[size++] = (byte) b;
+		}
+
+		private void addGameStart() {
+			if (numOfGameStarts == gameStartOffsets.length) {
+				gameStartOffsets = Arrays.copyOf(gameStartOffsets, 2 * numOfGameStarts);
+				gameStartLines = Arrays.copyOf(gameStartLines, 2 * numOfGameStarts);
+			}
+			gameStartOffsets[numOfGameStarts] = size;
+			gameStartLines[numOfGameStarts] = lineNumber;
+			++numOfGameStarts;
+		}
+
+		private Chunk cut() {
+			// The first chunk may start with text before the first game.
+			if (numOfGameStarts == 0 || gameStartOffsets[0] != 0) {
+				addGameStart();
+				System.arraycopy(gameStartOffsets, 0, gameStartOffsets, 1, numOfGameStarts - 1);
+				System.arraycopy(gameStartLines, 0, gameStartLines, 1, numOfGameStarts - 1);
+				gameStartOffsets[0] = 0;
+				gameStartLines[0] = chunkLineNumber;
+			}
+			Chunk chunk = new Chunk(new String(bytes, 0, size, StandardCharsets.ISO_8859_1),
+					Arrays.copyOf(gameStartOffsets, numOfGameStarts), Arrays.copyOf(gameStartLines, numOfGameStarts),
+					numOfGameStarts);
+			size = 0;
+			numOfGameStarts = 0;
+			chunkLineNumber = lineNumber;
+			return chunk;
+		}
+	}
+}
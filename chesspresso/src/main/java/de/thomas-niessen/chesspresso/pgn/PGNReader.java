@@ -22,7 +22,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.Reader;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -107,11 +113,24 @@ public final class PGNReader {
 		S_IS_TOKEN['?'] = true; // direct NAGs
 	}
 
+	// Tag names for which no new strings are created, see getLastTokenAsTagName.
+	private static final String[] KNOWN_TAG_NAMES = { PGN.TAG_EVENT, PGN.TAG_SITE, PGN.TAG_DATE, PGN.TAG_ROUND,
+			PGN.TAG_WHITE, PGN.TAG_BLACK, PGN.TAG_RESULT, PGN.TAG_EVENT_DATE, PGN.TAG_WHITE_ELO, PGN.TAG_BLACK_ELO,
+			PGN.TAG_ECO, PGN.TAG_SET_UP, PGN.TAG_FEN, PGN.TAG_TERMINATION, PGN.TAG_VARIANT, PGN.TAG_ANNOTATOR, PGN.TAG_MODE,
+			PGN.TAG_PLY_COUNT };
+
 	// ======================================================================
 
 	private LineNumberReader lineNumberReader;
 	private String filename;
 
+	// The input as bytes, if the reader was created for a memory segment. Then get() reads the bytes
+	// directly (ISO-8859-1 maps them 1:1 to chars) and counts the lines like LineNumberReader.
+	private MemorySegment segment;
+	private long segmentSize;
+	private long segmentOffset;
+	private int segmentLineNumber;
+
 	private Game curGame;
 	private int lastChar;
 	private int lastToken;
@@ -121,6 +140,7 @@ public final class PGNReader {
 	private boolean ignoreLineComment;
 
 	private PGNErrorHandler errorHandler;
+	private boolean headless;
 
 	// ======================================================================
 
@@ -136,6 +156,39 @@ public final class PGNReader {
 		setInput(reader, name);
 	}
 
+	/**
+	 * Creates a reader which works directly on the bytes of the segment, e.g. a
+	 * file mapped by {@link #mapFile(Path, Arena)}. This is considerably faster
+	 * than reading a stream, and the size of the input is not limited by the
+	 * heap. The data is read as ISO-8859-1. The segment must stay accessible
+	 * while the reader is used.
+	 *
+	 * @param segment the PGN data
+	 * @param name    the name used in errors and warnings
+	 */
+	public PGNReader(MemorySegment segment, String name) {
+		init();
+		this.segment = segment;
+		this.segmentSize = segment.byteSize();
+		filename = name;
+	}
+
+	/**
+	 * Maps the file read-only into memory, see
+	 * {@link #PGNReader(MemorySegment, String)}. The mapping is released when the
+	 * arena is closed.
+	 *
+	 * @param path  the file
+	 * @param arena the arena which controls the lifetime of the mapping
+	 * @return the mapped file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public static MemorySegment mapFile(Path path, Arena arena) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+		}
+	}
+
 	// TN: was deprecated, but I think it is useful
 	public PGNReader(String filename) throws IOException {
 		init();
@@ -162,6 +215,12 @@ public final class PGNReader {
 	public void reset() throws FileNotFoundException {
 		String fn = filename;
 		init();
+		if (segment != null) {
+			filename = fn;
+			segmentOffset = 0;
+			segmentLineNumber = 0;
+			return;
+		}
 		InputStream iStrm = new FileInputStream(fn);
 		setInput(new InputStreamReader(iStrm, StandardCharsets.ISO_8859_1), fn);
 	}
@@ -181,6 +240,15 @@ public final class PGNReader {
 		errorHandler = handler;
 	}
 
+	/**
+	 * Sets whether {@link #parseGame()} creates headless games (see
+	 * {@link Game#createHeadless()}). This is recommended for batch processing
+	 * without a user interface.
+	 */
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+	}
+
 	// ======================================================================
 
 	final static int TOK_EOF = -1, TOK_EOL = -2, TOK_IDENT = -3, TOK_STRING = -4, TOK_NO_TOKEN = -100;
@@ -192,6 +260,9 @@ public final class PGNReader {
 	 * @return the current line number
 	 */
 	private int getLineNumber() {
+		if (segment != null) {
+			return segmentLineNumber + 1;
+		}
 		return lineNumberReader != null ? lineNumberReader.getLineNumber() + 1 : 0;
 	}
 
@@ -238,7 +309,23 @@ public final class PGNReader {
 	// ======================================================================
 
 	private int get() throws IOException {
-		return lineNumberReader.read();
+		if (segment == null) {
+			return lineNumberReader.read();
+		}
+		if (segmentOffset == segmentSize) {
+			return -1;
+		}
+		int ch = segment.get(ValueLayout.JAVA_BYTE, segmentOffset++) & 0xFF;
+		if (ch == '\r') { // as LineNumberReader: "\r\n" and "\r" become '\n'
+			if (segmentOffset < segmentSize && segment.get(ValueLayout.JAVA_BYTE, segmentOffset) == '\n') {
+				++segmentOffset;
+			}
+			++segmentLineNumber;
+			return '\n';
+		} else if (ch == '\n') {
+			++segmentLineNumber;
+		}
+		return ch;
 	}
 
 	private int getChar() throws IOException {
@@ -352,6 +439,38 @@ public final class PGNReader {
 		return String.valueOf(buf, 0, lastTokenLength);
 	}
 
+	private String getLastTokenAsTagName() {
+		for (String tagName : KNOWN_TAG_NAMES) {
+			if (tagName.length() == lastTokenLength && isLastToken(tagName)) {
+				return tagName;
+			}
+		}
+		return getLastTokenAsString();
+	}
+
+	private boolean isLastToken(String str) {
+		for (int i = 0; i < lastTokenLength; i++) {
+			if (buf[i] != str.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Returns the last token without leading and trailing white spaces (as String::trim),
+	// or null if nothing remains.
+	private String getLastTokenAsTrimmedString() {
+		int start = 0;
+		int end = lastTokenLength;
+		while (start < end && buf[start] <= ' ') {
+			start++;
+		}
+		while (start < end && buf[end - 1] <= ' ') {
+			end--;
+		}
+		return start == end ? null : String.valueOf(buf, start, end - start);
+	}
+
 	private boolean isLastTokenInt() {
 		for (int i = 0; i < lastTokenLength; i++) {
 			int digit = buf[i];
@@ -399,7 +518,7 @@ public final class PGNReader {
 			String tagName = null;
 
 			if (getNextToken() == TOK_IDENT) {
-				tagName = getLastTokenAsString();
+				tagName = getLastTokenAsTagName();
 			} else {
 				syntaxError("Tag name expected");
 			}
@@ -540,6 +659,7 @@ public final class PGNReader {
 		// String s = getLastTokenAsString();
 		// if (DEBUG) System.out.println("moveStr= " + s);
 		short move = Move.ILLEGAL_MOVE;
+		boolean isLegalityChecked = false; // getPieceMove returns legal moves only
 		Variant variant = curGame.getPosition().getVariant();
 		if (buf[0] == 'O' && buf[1] == '-' && buf[2] == 'O') {
 			if (lastTokenLength >= 5 && buf[3] == '-' && buf[4] == 'O') {
@@ -690,11 +810,16 @@ public final class PGNReader {
 					last--;
 				}
 				move = curGame.getPosition().getPieceMove(piece, col, row, toSqi);
+				isLegalityChecked = true;
 			}
 		}
 		if (DEBUG) {
 			System.out.println("  -> " + Move.getString(move));
 		}
+		if (move == Move.ILLEGAL_MOVE
+				|| (!isLegalityChecked && !Move.isNullMove(move) && !curGame.getPosition().isLegal(move))) {
+			syntaxError("Illegal move near ply " + curGame.getPosition().getPlyNumber() + ", move " + getLastTokenAsString());
+		}
 		return move;
 	}
 
@@ -741,7 +866,7 @@ public final class PGNReader {
 		if (!isLastTokenResult()) {
 			try {
 				move = getLastTokenAsMove();
-				curGame.getPosition().doMove(move);
+				curGame.doMove(move);
 				if (preMoveComment != null && !preMoveComment.isEmpty()) {
 					curGame.setPreMoveComment(preMoveComment);
 				}
@@ -777,7 +902,7 @@ public final class PGNReader {
 				++level;
 				commentsArePreMove = true;
 				comments.clear();
-				curGame.getPosition().undoMove();
+				curGame.goBack();
 				break;
 			}
 			case PGN.TOK_LINE_END -> {
@@ -795,8 +920,8 @@ public final class PGNReader {
 				break;
 			}
 			case PGN.TOK_COMMENT_BEGIN -> {
-				String comment = getLastTokenAsString().trim();
-				if (!comment.isEmpty()) {
+				String comment = getLastTokenAsTrimmedString();
+				if (comment != null) {
 					comments.add(comment);
 				}
 				break;
@@ -888,7 +1013,7 @@ public final class PGNReader {
 	 * @return the next game
 	 */
 	public Game parseGame() throws PGNSyntaxError, IOException {
-		return parseGame(new Game());
+		return parseGame(headless ? Game.createHeadless() : new Game());
 	}
 
 	/**
@@ -900,7 +1025,7 @@ public final class PGNReader {
 		if (DEBUG) {
 			System.out.println("===> new game");
 		}
-		if ((lineNumberReader == null) || (game == null)) {
+		if ((lineNumberReader == null && segment == null) || (game == null)) {
 			return null;
 		}
 		curGame = null;
@@ -60,6 +60,65 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 		setToPlay(Chess.otherPlayer(getToPlay()));
 	}
 
+	/*
+	 * =========================================================================
+	 */
+
+	@Override
+	public void setBitBoards(long[] bitBoards, int toPlay, int castles, int sqiEP, int halfMoveClock, int plyNumber,
+			boolean validate) throws IllegalPositionException {
+		checkBitBoards(bitBoards);
+		for (int sqi = 0; sqi < Chess.NUM_OF_SQUARES; sqi++) {
+			int stone = Chess.NO_STONE;
+			for (int s = Chess.MIN_STONE; s <= Chess.MAX_STONE; ++s) {
+				if (s != Chess.NO_STONE && (bitBoards[s - Chess.MIN_STONE] & (1L << sqi)) != 0L) {
+					stone = s;
+					break;
+				}
+			}
+			setStone(sqi, stone);
+		}
+		setProperties(toPlay, castles, sqiEP, halfMoveClock, plyNumber, validate);
+	}
+
+	protected static void checkBitBoards(long[] bitBoards) {
+		if (bitBoards.length != Chess.MAX_STONE - Chess.MIN_STONE + 1) {
+			throw new IllegalArgumentException(
+					"AbstractMutablePosition::setBitBoards: expected one bitboard per stone, found " + bitBoards.length);
+		}
+		long bbAll = 0L;
+		for (int stone = Chess.MIN_STONE; stone <= Chess.MAX_STONE; ++stone) {
+			if (stone == Chess.NO_STONE) {
+				continue;
+			}
+			long bb = bitBoards[stone - Chess.MIN_STONE];
+			if ((bbAll & bb) != 0L) {
+				throw new IllegalArgumentException(
+						"AbstractMutablePosition::setBitBoards: square " + Chess.sqiToStr(Long.numberOfTrailingZeros(bbAll & bb))
+								+ " is set twice");
+			}
+			if ((stone == Chess.WHITE_KING || stone == Chess.BLACK_KING) && Long.bitCount(bb) > 1) {
+				throw new IllegalArgumentException("AbstractMutablePosition::setBitBoards: more than one king of a color");
+			}
+			bbAll |= bb;
+		}
+	}
+
+	protected final void setProperties(int toPlay, int castles, int sqiEP, int halfMoveClock, int plyNumber,
+			boolean validate) throws IllegalPositionException {
+		setToPlay(toPlay);
+		setCastles(castles);
+		setSqiEP(sqiEP); // after the stones, since the hash code depends on the pawns
+		setHalfMoveClock(halfMoveClock);
+		setPlyOffset(plyNumber);
+		if (validate) {
+			if (getValidity() != Validity.IS_VALID) {
+				throw new IllegalPositionException("Invalid position: " + getValidity());
+			}
+			internalValidate();
+		}
+	}
+
 	/*
 	 * =========================================================================
 	 */
@@ -101,7 +160,7 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 	 */
 
 	@Override
-	public final void moveAllUp() {
+	public void moveAllUp() {
 		for (int sqi = Chess.H7; sqi >= Chess.A1; --sqi) {
 			setStone(sqi + 8, getStone(sqi));
 		}
@@ -114,7 +173,7 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 	}
 
 	@Override
-	public final void moveAllDown() {
+	public void moveAllDown() {
 		for (int sqi = Chess.A2; sqi <= Chess.H8; ++sqi) {
 			setStone(sqi - 8, getStone(sqi));
 		}
@@ -127,7 +186,7 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 	}
 
 	@Override
-	public final void moveAllLeft() {
+	public void moveAllLeft() {
 		for (int sqi = Chess.A1; sqi <= Chess.H8; ++sqi) {
 			if (sqi % 8 != 7) {
 				setStone(sqi, getStone(sqi + 1));
@@ -141,7 +200,7 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 	}
 
 	@Override
-	public final void moveAllRight() {
+	public void moveAllRight() {
 		for (int sqi = Chess.H8; sqi >= Chess.A1; --sqi) {
 			if (sqi % 8 != 0) {
 				setStone(sqi, getStone(sqi - 1));
@@ -155,7 +214,7 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 	}
 
 	@Override
-	public final void rotate90DegreesClockwise() {
+	public void rotate90DegreesClockwise() {
 		int[] stones = new int[64];
 		for (int sqi = Chess.A1; sqi <= Chess.H8; ++sqi) {
 			stones[sqi] = getStone(sqi);
@@ -251,7 +310,7 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 	}
 
 	@Override
-	public final void flipAboutA1H8Diagonal() {
+	public void flipAboutA1H8Diagonal() {
 		int[] stones = new int[64];
 		for (int sqi = Chess.A1; sqi <= Chess.H8; ++sqi) {
 			stones[sqi] = getStone(sqi);
@@ -265,7 +324,7 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 	}
 
 	@Override
-	public final void flipAboutA8H1Diagonal() {
+	public void flipAboutA8H1Diagonal() {
 		int[] stones = new int[64];
 		for (int sqi = Chess.A1; sqi <= Chess.H8; ++sqi) {
 			stones[sqi] = getStone(sqi);
@@ -312,7 +371,7 @@ public abstract class AbstractMutablePosition extends AbstractPosition implement
 	 * =========================================================================
 	 */
 	@Override
-	public final void invert() {
+	public void invert() {
 		/*---------- invert stones ----------*/
 		int[] stones = new int[Chess.NUM_OF_SQUARES];
 		for (int sqi = 0; sqi < Chess.NUM_OF_SQUARES; sqi++) {
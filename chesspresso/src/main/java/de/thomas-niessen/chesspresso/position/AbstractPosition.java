@@ -98,6 +98,28 @@ public abstract class AbstractPosition implements ImmutablePosition {
 		}
 	}
 
+	/**
+	 * Mixes the bits of a hash code, such that each bit of the result depends on
+	 * all bits of the hash code. The hash modifiers above stem from a linear
+	 * congruential generator, so the lower bits of the hash codes are not well
+	 * distributed. Hash tables which take some bits of a hash code as an index
+	 * should take them from the mixed hash code. Different hash codes have
+	 * different mixed hash codes.
+	 *
+	 * @param hashCode the hash code, see {@link ImmutablePosition#getHashCode()}
+	 * @return the mixed hash code
+	 */
+	public static long mixHashCode(long hashCode) {
+		// the finalizer of MurmurHash3
+		long key = hashCode;
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		key *= 0xC4CEB9FE1A85EC53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
 	private static long startPositionHashCode = 0L;
 
 	protected static long getStartPositionHashCode() {
@@ -171,7 +193,8 @@ public abstract class AbstractPosition implements ImmutablePosition {
 
 	@Override
 	public final int hashCode() {
-		return (int) getHashCode();
+		long hashCode = getHashCode();
+		return (int) (hashCode ^ (hashCode >>> 32));
 	}
 
 	@Override
@@ -179,14 +202,32 @@ public abstract class AbstractPosition implements ImmutablePosition {
 		return getHashCode() == getStartPositionHashCode();
 	}
 
+	/**
+	 * Positions are equal if they have the same stones on the same squares, the
+	 * same player to move, the same castling rights and the same en passant
+	 * capture possibility (as in {@link #getHashCode()}, an en passant square is
+	 * only taken into account if a pawn can capture on it). Ply number and half
+	 * move clock are ignored.
+	 */
 	@Override
 	public boolean equals(Object obj) {
-		System.out.println("Stacktrace of AbstractPosition::equals:");
-		StackTraceElement[] st = Thread.currentThread().getStackTrace();
-		for (StackTraceElement ste : st) {
-			System.out.println(ste);
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof ImmutablePosition other)) {
+			return false;
 		}
-		return (obj instanceof ImmutablePosition) && (((ImmutablePosition) obj).getHashCode() == getHashCode());
+		// the hash codes differ for almost all unequal positions and include the en passant column
+		if (other.getHashCode() != getHashCode() || other.getToPlay() != getToPlay()
+				|| other.getCastles() != getCastles()) {
+			return false;
+		}
+		for (int sqi = 0; sqi < Chess.NUM_OF_SQUARES; sqi++) {
+			if (other.getStone(sqi) != getStone(sqi)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/*
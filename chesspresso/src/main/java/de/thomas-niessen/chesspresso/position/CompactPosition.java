@@ -18,10 +18,18 @@ import chesspresso.Chess;
 import chesspresso.Variant;
 
 /**
- * An implementation of the position interface.
+ * An immutable implementation of the position interface.
  *
- * The class is optimized for memory footprint. Each instance uses only 36 bytes
- * for internal representation (plus some overhead for java internals).
+ * The class is optimized for memory footprint. The stones are stored in four
+ * longs, one nibble per square, and all other data in one further long. So each
+ * instance uses only 40 bytes for internal representation (plus some overhead
+ * for java internals), and millions of positions can be kept in memory, e.g.
+ * for indexing.
+ * 
+ * <p>
+ * Queries which need move generation (check, mate, stalemate, the en passant
+ * part of the FEN) create a temporary {@link PositionImpl}. Use
+ * {@link #toPosition()} if many such queries are made.
  *
  * @author Bernhard Seybold
  * 
@@ -31,58 +39,130 @@ public class CompactPosition extends AbstractPosition {
 	private final static int SQI_EP_SHIFT = 0, SQI_EP_MASK = 0x07F, // [0, 128[
 			CASTLES_SHIFT = 7, CASTLES_MASK = 0x00F, // [0, 15]
 			TO_PLAY_SHIFT = 11, TO_PLAY_MASK = 0x001, // [0 | 1]
-			PLY_NUMBER_SHIFT = 12, PLY_NUMBER_MASK = 0x3FF, // [0, 1024[
-			HALF_MOVE_CLOCK_SHIFT = 22, HALF_MOVE_CLOCK_MASK = 0xFF; // [0, 128[
+			HALF_MOVE_CLOCK_SHIFT = 12, HALF_MOVE_CLOCK_MASK = 0x0FF, // [0, 256[
+			VARIANT_SHIFT = 20, VARIANT_MASK = 0x001, // [0 | 1]
+			CHESS960_KING_FILE_SHIFT = 21, CHESS960_QUEENSIDE_ROOK_FILE_SHIFT = 25, CHESS960_KINGSIDE_ROOK_FILE_SHIFT = 29,
+			CHESS960_FILE_MASK = 0x00F, // file + 1, 0 for no file
+			PLY_NUMBER_SHIFT = 33;
+	private final static long PLY_NUMBER_MASK = 0x7FFFFFFFL;
+
+	// mask of the lowest bit of each nibble
+	private final static long NIBBLE_LOW_BITS = 0x1111111111111111L;
 
 	/*
 	 * =============================================================================
 	 */
 
-	private final int[] stones; // 32 bytes
-	private final int flags; // 4 bytes
+	// The stones of the squares a1-h2, a3-h4, a5-h6 and a7-h8, each stone as a
+	// signed nibble. Chess.NO_STONE is 0, so empty squares are 0 bits.
+	private final long stones0, stones1, stones2, stones3; // 32 bytes
+	private final long flags; // 8 bytes
 
 	/*
 	 * =============================================================================
 	 */
 
 	public CompactPosition(ImmutablePosition position) {
-		stones = new int[Chess.NUM_OF_SQUARES / 8];
-		for (int sqi = 0; sqi < Chess.NUM_OF_SQUARES; sqi += 8) {
-			stones[sqi / 8] = (position.getStone(sqi) - Chess.NO_STONE) + (position.getStone(sqi + 1) - Chess.NO_STONE) << 4
-					+ (position.getStone(sqi + 2) - Chess.NO_STONE) << 8 + (position.getStone(sqi + 3) - Chess.NO_STONE) << 12
-							+ (position.getStone(sqi + 4) - Chess.NO_STONE) << 16
-									+ (position.getStone(sqi + 5) - Chess.NO_STONE) << 20
-											+ (position.getStone(sqi + 6) - Chess.NO_STONE) << 24
-													+ (position.getStone(sqi + 7) - Chess.NO_STONE) << 28;
+		ImmutablePosition source = position;
+		if (source instanceof Position pos) {
+			source = pos.getImplementation();
+		}
+		long[] stones = new long[4];
+		if (source instanceof PositionImpl impl) {
+			// only the occupied squares have to be visited
+			for (int stone = Chess.MIN_STONE; stone <= Chess.MAX_STONE; ++stone) {
+				if (stone == Chess.NO_STONE || stone == Chess.WHITE_KING || stone == Chess.BLACK_KING) {
+					continue;
+				}
+				long nibble = stone & 0xFL;
+				long bb = impl.getBitBoard(stone);
+				while (bb != 0L) {
+					int sqi = Long.numberOfTrailingZeros(bb);
+					stones[sqi >>> 4] |= nibble << (4 * (sqi & 0xF));
+					bb &= bb - 1;
+				}
+			}
+			setStone(stones, impl.getWhitesKingSquare(), Chess.WHITE_KING);
+			setStone(stones, impl.getBlacksKingSquare(), Chess.BLACK_KING);
+		} else {
+			for (int sqi = 0; sqi < Chess.NUM_OF_SQUARES; ++sqi) {
+				stones[sqi >>> 4] |= (source.getStone(sqi) & 0xFL) << (4 * (sqi & 0xF));
+			}
 		}
+		stones0 = stones[0];
+		stones1 = stones[1];
+		stones2 = stones[2];
+		stones3 = stones[3];
+
+		long f = ((long) (source.getSqiEP() - Chess.NO_SQUARE) << SQI_EP_SHIFT) | ((long) source.getCastles() << CASTLES_SHIFT)
+				| ((long) (source.getToPlay() == Chess.WHITE ? 0 : 1) << TO_PLAY_SHIFT)
+				| ((long) (source.getHalfMoveClock() & HALF_MOVE_CLOCK_MASK) << HALF_MOVE_CLOCK_SHIFT)
+				| ((source.getPlyNumber() & PLY_NUMBER_MASK) << PLY_NUMBER_SHIFT);
+		if (source.getVariant() == Variant.CHESS960) {
+			f |= (1L << VARIANT_SHIFT) | ((long) (source.getChess960KingFile() - Chess.NO_FILE) << CHESS960_KING_FILE_SHIFT)
+					| ((long) (source.getChess960QueensideRookFile() - Chess.NO_FILE) << CHESS960_QUEENSIDE_ROOK_FILE_SHIFT)
+					| ((long) (source.getChess960KingsideRookFile() - Chess.NO_FILE) << CHESS960_KINGSIDE_ROOK_FILE_SHIFT);
+		}
+		flags = f;
+	}
 
-		flags = ((position.getSqiEP() - Chess.NO_SQUARE) << SQI_EP_SHIFT) + (position.getCastles() << CASTLES_SHIFT)
-				+ ((position.getToPlay() == Chess.WHITE ? 0 : 1) << TO_PLAY_SHIFT) + (position.getPlyNumber() << PLY_NUMBER_SHIFT)
-				+ (position.getHalfMoveClock() << HALF_MOVE_CLOCK_SHIFT);
+	private static void setStone(long[] stones, int sqi, int stone) {
+		if (sqi != Chess.NO_SQUARE) {
+			stones[sqi >>> 4] |= (stone & 0xFL) << (4 * (sqi & 0xF));
+		}
 	}
 
 	/*
 	 * =============================================================================
 	 */
 
+	/**
+	 * Creates a position with the same data, which can be used for moves.
+	 *
+	 * @return a new position
+	 */
+	public Position toPosition() {
+		return new Position(this);
+	}
+
+	private PositionImpl toPositionImpl() {
+		PositionImpl position = new PositionImpl(1); // no moves will be done
+		position.setPositionSnapshot(this);
+		return position;
+	}
+
+	/*
+	 * =============================================================================
+	 */
+
+	private long getStones(int index) {
+		return switch (index) {
+		case 0 -> stones0;
+		case 1 -> stones1;
+		case 2 -> stones2;
+		default -> stones3;
+		};
+	}
+
 	@Override
 	public int getStone(int sqi) {
-		return ((stones[sqi / 8] >>> (4 * (sqi & 0x7))) & 0xF) + Chess.NO_STONE;
+		// shift the nibble to the top and back to extend the sign
+		return (int) ((getStones(sqi >>> 4) << (60 - 4 * (sqi & 0xF))) >> 60);
 	}
 
 	@Override
 	public int getPiece(int sqi) {
-		throw new UnsupportedOperationException("CompactPosition::getPiece: method has not been implemented yet.");
+		return Chess.stoneToPiece(getStone(sqi));
 	}
 
 	@Override
 	public int getSqiEP() {
-		return ((flags >>> SQI_EP_SHIFT) & SQI_EP_MASK) + Chess.NO_SQUARE;
+		return (int) ((flags >>> SQI_EP_SHIFT) & SQI_EP_MASK) + Chess.NO_SQUARE;
 	}
 
 	@Override
 	public int getCastles() {
-		return ((flags >>> CASTLES_SHIFT) & CASTLES_MASK);
+		return (int) ((flags >>> CASTLES_SHIFT) & CASTLES_MASK);
 	}
 
 	@Override
@@ -92,93 +172,192 @@ public class CompactPosition extends AbstractPosition {
 
 	@Override
 	public int getPlyNumber() {
-		return ((flags >>> PLY_NUMBER_SHIFT) & PLY_NUMBER_MASK);
+		return (int) ((flags >>> PLY_NUMBER_SHIFT) & PLY_NUMBER_MASK);
 	}
 
 	@Override
 	public int getHalfMoveClock() {
-		return ((flags >>> HALF_MOVE_CLOCK_SHIFT) & HALF_MOVE_CLOCK_MASK);
+		return (int) ((flags >>> HALF_MOVE_CLOCK_SHIFT) & HALF_MOVE_CLOCK_MASK);
 	}
 
 	@Override
 	public int getPlyOffset() {
-		throw new UnsupportedOperationException("CompactPosition::getPlyOffset: method has not been implemented yet.");
+		// as for a snapshot of a PositionImpl: the position is the start of its own history
+		return getPlyNumber();
 	}
 
 	@Override
 	public int getWhitesKingSquare() {
-		throw new UnsupportedOperationException("CompactPosition::getWhitesKingSquare: method has not been implemented yet.");
+		return getFirstSquare(Chess.WHITE_KING);
 	}
 
 	@Override
 	public int getBlacksKingSquare() {
-		throw new UnsupportedOperationException("CompactPosition::getBlacksKingSquare: method has not been implemented yet.");
+		return getFirstSquare(Chess.BLACK_KING);
 	}
 
 	@Override
 	public long getAllPawnsBB() {
-		throw new UnsupportedOperationException("CompactPosition::getAllPawnsBB: method has not been implemented yet.");
+		return getBitBoard(Chess.WHITE_PAWN) | getBitBoard(Chess.BLACK_PAWN);
 	}
 
 	@Override
 	public long getWhitePawnsBB() {
-		throw new UnsupportedOperationException("CompactPosition::getWhitePawnsBB: method has not been implemented yet.");
+		return getBitBoard(Chess.WHITE_PAWN);
 	}
 
 	@Override
 	public long getBlackPawnsBB() {
-		throw new UnsupportedOperationException("CompactPosition::getBlackPawnsBB: method has not been implemented yet.");
+		return getBitBoard(Chess.BLACK_PAWN);
 	}
 
 	@Override
 	public boolean isCheck() {
-		throw new UnsupportedOperationException("CompactPosition::isCheck: method has not been implemented yet.");
+		return toPositionImpl().isCheck();
 	}
 
 	@Override
 	public boolean isMate() {
-		throw new UnsupportedOperationException("CompactPosition::isMate: method has not been implemented yet.");
+		return toPositionImpl().isMate();
 	}
 
 	@Override
 	public boolean isStaleMate() {
-		throw new UnsupportedOperationException("CompactPosition::isStaleMate: method has not been implemented yet.");
+		return toPositionImpl().isStaleMate();
 	}
 
 	@Override
 	public boolean isInsufficientMaterial() {
-		throw new UnsupportedOperationException("CompactPosition::isInsufficientMaterial: method has not been implemented yet.");
+		// the same definition as in PositionImpl: no pawns, rooks and queens, and at
+		// most one minor piece
+		int minorPieces = 0;
+		for (int index = 0; index < 4; ++index) {
+			long stones = getStones(index);
+			while (stones != 0L) {
+				int shift = Long.numberOfTrailingZeros(stones) & ~3;
+				int piece = Chess.stoneToPiece((int) ((stones << (60 - shift)) >> 60));
+				if (piece == Chess.KNIGHT || piece == Chess.BISHOP) {
+					++minorPieces;
+				} else if (piece != Chess.KING) {
+					return false;
+				}
+				stones &= ~(0xFL << shift);
+			}
+		}
+		return minorPieces <= 1;
 	}
 
 	@Override
 	public int getNumberOfPieces() {
-		throw new UnsupportedOperationException("CompactPosition::getNumberOfPieces: method has not been implemented yet.");
+		int numberOfPieces = 0;
+		for (int index = 0; index < 4; ++index) {
+			long stones = getStones(index);
+			numberOfPieces += Long.bitCount((stones | (stones >>> 1) | (stones >>> 2) | (stones >>> 3)) & NIBBLE_LOW_BITS);
+		}
+		return numberOfPieces;
 	}
 
 	@Override
 	public Variant getVariant() {
-		throw new UnsupportedOperationException("CompactPosition::getVariant: method has not been implemented yet.");
+		return ((flags >>> VARIANT_SHIFT) & VARIANT_MASK) == 0 ? Variant.STANDARD : Variant.CHESS960;
 	}
 
 	@Override
 	public int getChess960KingFile() {
-		throw new UnsupportedOperationException("CompactPosition::getChess960KingFile: method has not been implemented yet.");
+		return (int) ((flags >>> CHESS960_KING_FILE_SHIFT) & CHESS960_FILE_MASK) + Chess.NO_FILE;
 	}
 
 	@Override
 	public int getChess960QueensideRookFile() {
-		throw new UnsupportedOperationException(
-				"CompactPosition::getChess960QueensideRookFile: method has not been implemented yet.");
+		return (int) ((flags >>> CHESS960_QUEENSIDE_ROOK_FILE_SHIFT) & CHESS960_FILE_MASK) + Chess.NO_FILE;
 	}
 
 	@Override
 	public int getChess960KingsideRookFile() {
-		throw new UnsupportedOperationException(
-				"CompactPosition::getChess960KingsideRookFile: method has not been implemented yet.");
+		return (int) ((flags >>> CHESS960_KINGSIDE_ROOK_FILE_SHIFT) & CHESS960_FILE_MASK) + Chess.NO_FILE;
 	}
 
 	@Override
 	public String getEpFEN() {
-		throw new UnsupportedOperationException("CompactPosition::getEpFEN: method has not been implemented yet.");
+		return toPositionImpl().getEpFEN();
+	}
+
+	/*
+	 * =============================================================================
+	 */
+
+	@Override
+	public long getHashCode() {
+		long hashCode = 0L;
+		for (int index = 0; index < 4; ++index) {
+			long stones = getStones(index);
+			while (stones != 0L) {
+				int shift = Long.numberOfTrailingZeros(stones) & ~3;
+				int stone = (int) ((stones << (60 - shift)) >> 60);
+				hashCode ^= HASH_MOD[16 * index + shift / 4][stone - Chess.MIN_STONE];
+				stones &= ~(0xFL << shift);
+			}
+		}
+		return hashCode ^ getNonStoneHashCode();
+	}
+
+	private long getNonStoneHashCode() {
+		long hashCode = HASH_CASTLE_MOD[getCastles()];
+		int sqiEP = getSqiEP();
+		if (sqiEP != Chess.NO_SQUARE) {
+			// as in AbstractPosition: only if a pawn can capture en passant
+			int col = Chess.sqiToCol(sqiEP);
+			int row = sqiEP < Chess.A4 ? 3 : 4;
+			int capturingPawn = sqiEP < Chess.A4 ? Chess.BLACK_PAWN : Chess.WHITE_PAWN;
+			if ((col > 0 && getStone(Chess.coorToSqi(col - 1, row)) == capturingPawn)
+					|| (col < 7 && getStone(Chess.coorToSqi(col + 1, row)) == capturingPawn)) {
+				hashCode ^= HASH_EP_MOD[col];
+			}
+		}
+		if (getToPlay() == Chess.BLACK) {
+			hashCode |= HASH_TOPLAY_MULT;
+		}
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof CompactPosition other)) {
+			return super.equals(obj);
+		}
+		// as in AbstractPosition: ply number and half move clock are ignored, and an en
+		// passant square only counts if a pawn can capture on it
+		long mask = ((long) CASTLES_MASK << CASTLES_SHIFT) | ((long) TO_PLAY_MASK << TO_PLAY_SHIFT);
+		return stones0 == other.stones0 && stones1 == other.stones1 && stones2 == other.stones2 && stones3 == other.stones3
+				&& (flags & mask) == (other.flags & mask)
+				&& (getSqiEP() == other.getSqiEP() || getNonStoneHashCode() == other.getNonStoneHashCode());
+	}
+
+	/*
+	 * =============================================================================
+	 */
+
+	private long getBitBoard(int stone) {
+		long bb = 0L;
+		long nibble = stone & 0xFL;
+		for (int index = 0; index < 4; ++index) {
+			long stones = getStones(index);
+			// a nibble which is equal to the stone's nibble becomes 0
+			long diff = stones ^ (nibble * NIBBLE_LOW_BITS);
+			long matches = ~(diff | (diff >>> 1) | (diff >>> 2) | (diff >>> 3)) & NIBBLE_LOW_BITS;
+			while (matches != 0L) {
+				bb |= 1L << (16 * index + Long.numberOfTrailingZeros(matches) / 4);
+				matches &= matches - 1;
+			}
+		}
+		return bb;
+	}
+
+	private int getFirstSquare(int stone) {
+		long bb = getBitBoard(stone);
+		return bb == 0L ? Chess.NO_SQUARE : Long.numberOfTrailingZeros(bb);
 	}
 }
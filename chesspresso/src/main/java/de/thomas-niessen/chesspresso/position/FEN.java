@@ -47,110 +47,204 @@ public class FEN {
 	public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
 	public static final String EMPTY_BOARD = "8/8/8/8/8/8/8/8 w - - 0 1";
 
-	private static final Pattern SQUARE_PATTERN = Pattern.compile("[a-h][1-8]");
-	private static final Pattern DOUBLE_WHITE_KING_PATTERN = Pattern.compile(".*K.*K.*");
-	private static final Pattern DOUBLE_BLACK_KING_PATTERN = Pattern.compile(".*k.*k.*");
-
-	private static final Pattern ANY_CASTLING_PATTERN = Pattern.compile("[a-hA-HkqKQ]+");
 	private static final Pattern CLASSICAL_CASTLING_PATTERN = Pattern.compile("[KQkq]+");
 	private static final Pattern SHREDDER_CASTLING_PATTERN = Pattern.compile("[A-Ha-h]+");
 
 	static void initFromFEN(MutablePosition pos, String fen, boolean validate) throws InvalidFenException {
-		pos.clear();
-
 		if (fen == null) {
+			pos.clear();
 			throw new InvalidFenException("Invalid FEN: FEN string is null.");
 		}
 		if (fen.equals(FEN.START_POSITION)) { // a little bit of optimization
+			pos.clear();
 			initFromStandardStartFEN(pos);
 			return;
 		}
+		initFromFEN(pos, fen, 0, fen.length(), validate);
+	}
 
-		String[] fenParts = fen.trim().split(" +");
-		if (fenParts.length == 0) {
-			throw new InvalidFenException("Invalid FEN: empty string or only white spaces.");
+	/**
+	 * Sets <code>pos</code> from the FEN between <code>start</code> (inclusive)
+	 * and <code>end</code> (exclusive) of <code>fen</code>. The FEN is parsed in
+	 * a single pass without regular expressions and, if no error occurs and the
+	 * castling information is given as in standard chess, without allocating
+	 * objects. For a {@link PositionImpl} the bitboards are set at once. Missing
+	 * trailing fields get their default values.
+	 *
+	 * @param pos      the position to be set
+	 * @param fen      the character sequence which contains the FEN
+	 * @param start    the index of the first character of the FEN
+	 * @param end      the index after the last character of the FEN
+	 * @param validate whether the resulting position is validated
+	 * @throws InvalidFenException if the FEN cannot be parsed or, in case of
+	 *                             validation, the position is not valid
+	 */
+	static void initFromFEN(MutablePosition pos, CharSequence fen, int start, int end, boolean validate)
+			throws InvalidFenException {
+		pos.clear();
+
+		if (fen == null) {
+			throw new InvalidFenException("Invalid FEN: FEN string is null.");
+		}
+		if (start < 0 || end > fen.length() || start > end) {
+			throw new IndexOutOfBoundsException("FEN::initFromFEN: invalid range " + start + ".." + end);
+		}
+		// the same as trim()
+		while (start < end && fen.charAt(start) <= ' ') {
+			++start;
+		}
+		while (end > start && fen.charAt(end - 1) <= ' ') {
+			--end;
 		}
 
+		/* ========== 1st field : pieces ========== */
+		int fieldEnd = nextFieldEnd(fen, start, end);
+		int piecesEnd = fieldEnd;
+		while (piecesEnd > start && fen.charAt(piecesEnd - 1) == '/') { // ignored, as by split
+			--piecesEnd;
+		}
+		// kings and rows are counted first, the errors are reported in this order
+		int numOfRows = 1, numOfWhiteKings = 0, numOfBlackKings = 0;
+		for (int index = start; index < piecesEnd; ++index) {
+			char ch = fen.charAt(index);
+			if (ch == '/') {
+				++numOfRows;
+			} else if (ch == 'K') {
+				++numOfWhiteKings;
+			} else if (ch == 'k') {
+				++numOfBlackKings;
+			}
+		}
 		if (validate) { // double kings of the same color will found nowhere else
-			if (DOUBLE_WHITE_KING_PATTERN.matcher(fenParts[0]).matches()) {
+			if (numOfWhiteKings > 1) {
 				throw new InvalidFenException("Invalid FEN: two or more white kings.");
 			}
-			if (DOUBLE_BLACK_KING_PATTERN.matcher(fenParts[0]).matches()) {
+			if (numOfBlackKings > 1) {
 				throw new InvalidFenException("Invalid FEN: two or more black kings.");
 			}
 		}
-
-		/* ========== 1st field : pieces ========== */
-		String[] rows = fenParts[0].split("/");
-		if (rows.length != 8) {
+		if (numOfRows != 8) {
 			String msg;
-			if (rows.length == 1) {
-				msg = "Invalid FEN: invalid piece description, only " + rows.length + " row found.";
-			} else if (rows.length < 8) {
-				msg = "Invalid FEN: invalid piece description, only " + rows.length + " row(s) found.";
+			if (numOfRows == 1) {
+				msg = "Invalid FEN: invalid piece description, only " + numOfRows + " row found.";
+			} else if (numOfRows < 8) {
+				msg = "Invalid FEN: invalid piece description, only " + numOfRows + " row(s) found.";
 			} else {
-				msg = "Invalid FEN: invalid piece description, " + rows.length + " row(s) found.";
+				msg = "Invalid FEN: invalid piece description, " + numOfRows + " row(s) found.";
 			}
 			throw new InvalidFenException(msg);
 		}
-		for (int rowIndex = 0; rowIndex < 8; ++rowIndex) {
-			char ch;
-			int colIndex = 0;
-			String row = rows[rowIndex];
-			for (int index = 0; index < row.length(); ++index) {
-				ch = row.charAt(index);
-				if (ch >= '1' && ch <= '8') {
-					int num = ch - '0';
-					if (colIndex + num > 8) {
-						throw new InvalidFenException("Invalid FEN: too many pieces in row " + (rowIndex + 1));
+
+		long bbWhites = 0L, bbBlacks = 0L, bbPawns = 0L, bbKnights = 0L, bbBishops = 0L, bbRooks = 0L;
+		int whiteKing = Chess.NO_SQUARE, blackKing = Chess.NO_SQUARE;
+		int rowIndex = 0, colIndex = 0, rowStart = start;
+		for (int index = start; index <= piecesEnd; ++index) {
+			char ch = (index < piecesEnd ? fen.charAt(index) : '/');
+			if (ch == '/') {
+				if (colIndex != 8) {
+					throw new InvalidFenException("Invalid FEN: check information '" + fen.subSequence(rowStart, index)
+							+ "' for FEN row " + (rowIndex + 1) + " (board row " + (8 - rowIndex) + ")");
+				}
+				++rowIndex;
+				colIndex = 0;
+				rowStart = index + 1;
+			} else if (ch >= '1' && ch <= '8') {
+				colIndex += ch - '0';
+				if (colIndex > 8) {
+					throw new InvalidFenException("Invalid FEN: too many pieces in row " + (rowIndex + 1));
+				}
+			} else {
+				int stone = FEN.fenCharToStone(ch);
+				if (stone == Chess.NO_STONE) {
+					throw new InvalidFenException("Invalid FEN: illegal piece char: " + ch);
+				}
+				if (colIndex < 8) { // otherwise the row is reported as invalid at its end
+					int sqi = Chess.coorToSqi(colIndex, 7 - rowIndex);
+					long bbSqi = 1L << sqi;
+					if (Chess.stoneToColor(stone) == Chess.WHITE) {
+						bbWhites |= bbSqi;
+					} else {
+						bbBlacks |= bbSqi;
 					}
-					for (int j = 0; j < num; ++j) {
-						pos.setStone(Chess.coorToSqi(colIndex, 7 - rowIndex), Chess.NO_STONE);
-						++colIndex;
+					switch (stone) {
+					case Chess.WHITE_KING -> { // a second king replaces the first one, as with setStone
+						if (whiteKing != Chess.NO_SQUARE) {
+							bbWhites &= ~(1L << whiteKing);
+						}
+						whiteKing = sqi;
+					}
+					case Chess.BLACK_KING -> {
+						if (blackKing != Chess.NO_SQUARE) {
+							bbBlacks &= ~(1L << blackKing);
+						}
+						blackKing = sqi;
+					}
+					case Chess.WHITE_PAWN, Chess.BLACK_PAWN -> bbPawns |= bbSqi;
+					case Chess.WHITE_KNIGHT, Chess.BLACK_KNIGHT -> bbKnights |= bbSqi;
+					case Chess.WHITE_BISHOP, Chess.BLACK_BISHOP -> bbBishops |= bbSqi;
+					case Chess.WHITE_ROOK, Chess.BLACK_ROOK -> bbRooks |= bbSqi;
+					default -> { // queens
+						bbBishops |= bbSqi;
+						bbRooks |= bbSqi;
 					}
-				} else {
-					int stone = FEN.fenCharToStone(ch);
-					if (stone == Chess.NO_STONE) {
-						throw new InvalidFenException("Invalid FEN: illegal piece char: " + ch);
 					}
-					pos.setStone(Chess.coorToSqi(colIndex, 7 - rowIndex), stone);
-					++colIndex;
 				}
-			}
-			if (colIndex != 8) {
-				throw new InvalidFenException("Invalid FEN: check information '" + row + "' for FEN row " + (rowIndex + 1)
-						+ " (board row " + (8 - rowIndex) + ")");
+				++colIndex;
 			}
 		}
+		if (pos instanceof PositionImpl impl) {
+			impl.setBitBoards(bbWhites, bbBlacks, bbPawns, bbKnights, bbBishops, bbRooks, whiteKing, blackKing);
+		} else {
+			setStones(pos, bbWhites, bbBlacks, bbPawns, bbKnights, bbBishops, bbRooks);
+		}
 
 		/* ========== 2nd field : to play ========== */
-		if (fenParts.length > 1) {
-			String toPlay = fenParts[1].toLowerCase();
-			if (toPlay.equals("w")) {
+		int fieldStart = nextFieldStart(fen, fieldEnd, end);
+		if (fieldStart < end) {
+			fieldEnd = nextFieldEnd(fen, fieldStart, end);
+			char ch = fen.charAt(fieldStart);
+			if (fieldEnd - fieldStart == 1 && (ch == 'w' || ch == 'W')) {
 				pos.setToPlay(Chess.WHITE);
-			} else if (toPlay.equals("b")) {
+			} else if (fieldEnd - fieldStart == 1 && (ch == 'b' || ch == 'B')) {
 				pos.setToPlay(Chess.BLACK);
 			} else {
-				throw new InvalidFenException("Invalid FEN: expected 'w' or 'b' as second field, but found " + fenParts[1]);
+				throw new InvalidFenException(
+						"Invalid FEN: expected 'w' or 'b' as second field, but found " + fen.subSequence(fieldStart, fieldEnd));
 			}
 		} else { // default value
 			pos.setToPlay(Chess.WHITE);
 		}
 
 		/* ========== 3rd field : castles ========== */
-		if (fenParts.length > 2) {
-			String castleString = fenParts[2];
-			if (!castleString.equals("-")) {
-				if (castleString.length() > 4) {
-					throw new InvalidFenException(
-							"Invalid FEN: expected castling information of length at most 4, found '" + castleString + "'");
+		fieldStart = nextFieldStart(fen, fieldEnd, end);
+		if (fieldStart < end) {
+			fieldEnd = nextFieldEnd(fen, fieldStart, end);
+			if (fieldEnd - fieldStart != 1 || fen.charAt(fieldStart) != '-') {
+				if (fieldEnd - fieldStart > 4) {
+					throw new InvalidFenException("Invalid FEN: expected castling information of length at most 4, found '"
+							+ fen.subSequence(fieldStart, fieldEnd) + "'");
+				}
+				boolean classical = true;
+				for (int index = fieldStart; index < fieldEnd; ++index) {
+					char ch = fen.charAt(index);
+					if (ch == 'K' || ch == 'Q' || ch == 'k' || ch == 'q') {
+						continue;
+					}
+					if ((ch < 'a' || ch > 'h') && (ch < 'A' || ch > 'H')) {
+						throw new InvalidFenException(
+								"Invalid FEN: illegal letter found  in '" + fen.subSequence(fieldStart, fieldEnd) + "'");
+					}
+					classical = false;
 				}
-				if (!ANY_CASTLING_PATTERN.matcher(castleString).matches()) {
-					throw new InvalidFenException("Invalid FEN: illegal letter found  in '" + castleString + "'");
+				CastlingInfoError error = CastlingInfoError.NOT_PROCESSED;
+				if (classical) {
+					error = checkAndSetStandardCastling(pos, fen, fieldStart, fieldEnd);
 				}
-				CastlingInfoError error = setCastlingAndVariant(pos, castleString);
 				if (error != CastlingInfoError.PROCESSED) {
-					throw new InvalidFenException("Invalid FEN: " + error.getText() + ".");
+					error = setCastlingAndVariant(pos, fen.subSequence(fieldStart, fieldEnd).toString());
+					if (error != CastlingInfoError.PROCESSED) {
+						throw new InvalidFenException("Invalid FEN: " + error.getText() + ".");
+					}
 				}
 			}
 		} else { // determine castling possibilities from position
@@ -175,43 +269,50 @@ public class FEN {
 		}
 
 		/* ========== 4th field : ep square ========== */
-		if (fenParts.length > 3) {
-			String epSquare = fenParts[3];
-			if (epSquare.equals("-")) {
+		fieldStart = nextFieldStart(fen, fieldEnd, end);
+		if (fieldStart < end) {
+			fieldEnd = nextFieldEnd(fen, fieldStart, end);
+			char ch = fen.charAt(fieldStart);
+			if (fieldEnd - fieldStart == 1 && ch == '-') {
 				pos.setSqiEP(Chess.NO_SQUARE);
+			} else if (fieldEnd - fieldStart == 2 && ch >= 'a' && ch <= 'h' && fen.charAt(fieldStart + 1) >= '1'
+					&& fen.charAt(fieldStart + 1) <= '8') {
+				pos.setSqiEP(Chess.coorToSqi(ch - 'a', fen.charAt(fieldStart + 1) - '1'));
 			} else {
-				if (SQUARE_PATTERN.matcher(epSquare).matches()) {
-					pos.setSqiEP(Chess.strToSqi(epSquare));
-				} else {
-					throw new InvalidFenException("Invalid FEN: expected en passant square, found " + epSquare);
-				}
+				throw new InvalidFenException(
+						"Invalid FEN: expected en passant square, found " + fen.subSequence(fieldStart, fieldEnd));
 			}
 		} else { // default value
 			pos.setSqiEP(Chess.NO_SQUARE);
 		}
 
 		/* ========== 5th field : half move clock ========== */
-		if (fenParts.length > 4) {
-			String hmClock = fenParts[4];
+		fieldStart = nextFieldStart(fen, fieldEnd, end);
+		if (fieldStart < end) {
+			fieldEnd = nextFieldEnd(fen, fieldStart, end);
 			try {
-				pos.setHalfMoveClock(Integer.parseInt(hmClock));
+				pos.setHalfMoveClock(Integer.parseInt(fen, fieldStart, fieldEnd, 10));
 			} catch (NumberFormatException e) {
-				throw new InvalidFenException("Invalid FEN: tried to evaluate the half-move clock, found " + hmClock);
+				throw new InvalidFenException(
+						"Invalid FEN: tried to evaluate the half-move clock, found " + fen.subSequence(fieldStart, fieldEnd));
 			}
 		} else { // default value
 			pos.setHalfMoveClock(0);
 		}
 
 		/* ========== 6th field : full move number ========== */
-		if (fenParts.length > 5) {
+		fieldStart = nextFieldStart(fen, fieldEnd, end);
+		if (fieldStart < end) {
+			fieldEnd = nextFieldEnd(fen, fieldStart, end);
 			int moveNumber;
 			try {
-				moveNumber = Integer.parseInt(fenParts[5]);
+				moveNumber = Integer.parseInt(fen, fieldStart, fieldEnd, 10);
 			} catch (NumberFormatException e) {
-				throw new InvalidFenException("Invalid FEN: tried to evaluate the move number, found " + fenParts[5]);
+				moveNumber = -1;
 			}
 			if (moveNumber < 0) {
-				throw new InvalidFenException("Invalid FEN: tried to evaluate the move number, found " + fenParts[5]);
+				throw new InvalidFenException(
+						"Invalid FEN: tried to evaluate the move number, found " + fen.subSequence(fieldStart, fieldEnd));
 			}
 			if (moveNumber == 0) {
 				moveNumber = 1;
@@ -242,6 +343,44 @@ public class FEN {
 		}
 	}
 
+	// fields are separated by blanks, as by split(" +")
+	private static int nextFieldEnd(CharSequence fen, int index, int end) {
+		while (index < end && fen.charAt(index) != ' ') {
+			++index;
+		}
+		return index;
+	}
+
+	private static int nextFieldStart(CharSequence fen, int index, int end) {
+		while (index < end && fen.charAt(index) == ' ') {
+			++index;
+		}
+		return index;
+	}
+
+	private static void setStones(MutablePosition pos, long bbWhites, long bbBlacks, long bbPawns, long bbKnights,
+			long bbBishops, long bbRooks) {
+		long bb = bbWhites | bbBlacks;
+		while (bb != 0L) {
+			int sqi = Long.numberOfTrailingZeros(bb);
+			long bbSqi = 1L << sqi;
+			int piece;
+			if ((bbPawns & bbSqi) != 0L) {
+				piece = Chess.PAWN;
+			} else if ((bbKnights & bbSqi) != 0L) {
+				piece = Chess.KNIGHT;
+			} else if ((bbBishops & bbSqi) != 0L) {
+				piece = ((bbRooks & bbSqi) != 0L ? Chess.QUEEN : Chess.BISHOP);
+			} else if ((bbRooks & bbSqi) != 0L) {
+				piece = Chess.ROOK;
+			} else {
+				piece = Chess.KING;
+			}
+			pos.setStone(sqi, Chess.pieceToStone(piece, (bbWhites & bbSqi) != 0L ? Chess.WHITE : Chess.BLACK));
+			bb &= bb - 1;
+		}
+	}
+
 	private static void initFromStandardStartFEN(MutablePosition pos) {
 		pos.setStone(Chess.A1, Chess.WHITE_ROOK);
 		pos.setStone(Chess.B1, Chess.WHITE_KNIGHT);
@@ -305,7 +444,7 @@ public class FEN {
 	private static CastlingInfoError setCastlingAndVariant(MutablePosition pos, String castleString) {
 		// Pre-condition: The castleString matches '[a-hkqA-HKQ]+' and has at most four letters.
 		if (CLASSICAL_CASTLING_PATTERN.matcher(castleString).matches()) {
-			CastlingInfoError error = checkAndSetStandardCastling(pos, castleString);
+			CastlingInfoError error = checkAndSetStandardCastling(pos, castleString, 0, castleString.length());
 			if (error == CastlingInfoError.PROCESSED) {
 				return CastlingInfoError.PROCESSED;
 			}
@@ -417,13 +556,14 @@ public class FEN {
 		return CastlingInfoError.PROCESSED;
 	}
 
-	private static CastlingInfoError checkAndSetStandardCastling(MutablePosition pos, String castleString) {
-		// Pre-condition: casteString matches '[KQkq]+'.
+	private static CastlingInfoError checkAndSetStandardCastling(MutablePosition pos, CharSequence castleString, int start,
+			int end) {
+		// Pre-condition: casteString matches '[KQkq]+' between start and end.
 		boolean whiteCanCastleKingSide = false;
 		boolean whiteCanCastleQueenSide = false;
 		boolean blackCanCastleKingSide = false;
 		boolean blackCanCastleQueenSide = false;
-		for (int i = 0; i < castleString.length(); ++i) {
+		for (int i = start; i < end; ++i) {
 			char ch = castleString.charAt(i);
 			if (ch == 'K') {
 				whiteCanCastleKingSide = true;
@@ -860,44 +1000,55 @@ public class FEN {
 		if (numberOfParts < 1) {
 			return "";
 		}
-		StringBuilder sb = new StringBuilder();
+		StringBuilder sb = new StringBuilder(90);
+		appendFEN(pos, numberOfParts, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the first <code>numberOfParts</code> fields of the FEN of
+	 * <code>pos</code> to <code>sb</code>. Nothing else is allocated, so a
+	 * StringBuilder can be reused for writing many FENs.
+	 *
+	 * @param pos           the position
+	 * @param numberOfParts the number of fields, at most 6
+	 * @param sb            the StringBuilder
+	 */
+	public static void appendFEN(ImmutablePosition pos, int numberOfParts, StringBuilder sb) {
+		if (numberOfParts < 1) {
+			return;
+		}
 
 		/* ========== 1st field : pieces ========== */
-		int row = 7, col = 0;
-		int blanks = 0;
-		while (row >= 0) {
-			int stone = pos.getStone(Chess.coorToSqiWithCheck(col, row));
-			if (stone == Chess.NO_STONE) {
-				blanks++;
-			} else {
-				if (blanks > 0) {
-					sb.append(blanks);
-					blanks = 0;
+		for (int row = 7; row >= 0; --row) {
+			int blanks = 0;
+			for (int sqi = row * Chess.NUM_OF_COLS, rowEnd = sqi + Chess.NUM_OF_COLS; sqi < rowEnd; ++sqi) {
+				int stone = pos.getStone(sqi);
+				if (stone == Chess.NO_STONE) {
+					blanks++;
+				} else {
+					if (blanks > 0) {
+						sb.append((char) ('0' + blanks));
+						blanks = 0;
+					}
+					sb.append(stoneToFenChar(stone));
 				}
-				sb.append(stoneToFenChar(stone));
 			}
-			col++;
-			if (col > 7) {
-				if (blanks > 0) {
-					sb.append(blanks);
-					blanks = 0;
-				}
-				row--;
-				col = 0;
-				blanks = 0;
-				if (row >= 0) {
-					sb.append('/');
-				}
+			if (blanks > 0) {
+				sb.append((char) ('0' + blanks));
+			}
+			if (row > 0) {
+				sb.append('/');
 			}
 		}
 		if (numberOfParts < 2) {
-			return sb.toString();
+			return;
 		}
 
 		/* ========== 2nd field : to play ========== */
 		sb.append(' ').append(pos.getToPlay() == Chess.WHITE ? 'w' : 'b');
 		if (numberOfParts < 3) {
-			return sb.toString();
+			return;
 		}
 
 		/* ========== 3rd field : castles ========== */
@@ -943,30 +1094,29 @@ public class FEN {
 			sb.append('-');
 		}
 		if (numberOfParts < 4) {
-			return sb.toString();
+			return;
 		}
 
 		/* ========== 4th field : ep square ========== */
 		sb.append(' ');
-		if (pos.getSqiEP() == Chess.NO_SQUARE) {
+		int sqiEP = pos.getSqiEP();
+		if (sqiEP == Chess.NO_SQUARE) {
 			sb.append('-');
 		} else {
-			sb.append(Chess.sqiToStr(pos.getSqiEP()));
+			sb.append(Chess.colToChar(Chess.sqiToCol(sqiEP))).append(Chess.rowToChar(Chess.sqiToRow(sqiEP)));
 		}
 		if (numberOfParts < 5) {
-			return sb.toString();
+			return;
 		}
 
 		/* ========== 5th field : half move clock ========== */
 		sb.append(' ').append(pos.getHalfMoveClock());
 		if (numberOfParts < 6) {
-			return sb.toString();
+			return;
 		}
 
 		/* ========== 6th field : full move number ========== */
 		sb.append(' ').append(pos.getPlyNumber() / 2 + 1);
-
-		return sb.toString();
 	}
 
 	public static String getFEN(ImmutablePosition pos) {
@@ -186,6 +186,17 @@ public interface ImmutablePosition {
 	@Override
 	int hashCode();
 
+	/**
+	 * Returns whether the other object is a position with the same stones on the
+	 * same squares, the same player to move, the same castling rights and the
+	 * same en passant capture possibility. Ply number and half move clock are
+	 * ignored. Positions of different implementations can be equal.
+	 *
+	 * @return whether the positions are equal
+	 */
+	@Override
+	boolean equals(Object obj);
+
 	/**
 	 * @return the square of the White's king
 	 */
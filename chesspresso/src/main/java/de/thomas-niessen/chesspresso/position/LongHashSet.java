@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.position;
+
+import java.util.Arrays;
+
+/**
+ * A set of longs without boxing, tuned for the Zobrist hash codes of positions
+ * ({@link ImmutablePosition#getHashCode()}). It uses open addressing with
+ * linear probing; the keys are stored in a single <code>long[]</code>, which
+ * is doubled when it is two thirds full.
+ * 
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Thomas Niessen
+ */
+public final class LongHashSet {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys; // 0 marks a free slot
+	private boolean containsZero;
+	private int size; // without the zero key
+	private int shift;
+	private int maxSize;
+
+	/*
+	 * =========================================================================
+	 */
+
+	public LongHashSet() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Creates a set which can hold the given number of keys without resizing.
+	 *
+	 * @param expectedSize the expected number of keys
+	 */
+	public LongHashSet(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("LongHashSet: negative size " + expectedSize);
+		}
+		allocate(LongIntHashMap.getCapacity(expectedSize));
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		shift = Long.numberOfLeadingZeros(capacity - 1);
+		maxSize = capacity / 3 * 2;
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	/**
+	 * Adds a key.
+	 *
+	 * @param key the key
+	 * @return true if the key was not contained before
+	 */
+	public boolean add(long key) {
+		if (key == 0L) {
+			boolean added = !containsZero;
+			containsZero = true;
+			return added;
+		}
+		int mask = keys.length - 1;
+		for (int index = LongIntHashMap.getIndex(key, shift);; index = (index + 1) & mask) {
+			long k = keys[index];
+			if (k == key) {
+				return false;
+			}
+			if (k == 0L) {
+				keys[index] = key;
+				if (++size > maxSize) {
+					resize();
+				}
+				return true;
+			}
+		}
+	}
+
+	public boolean contains(long key) {
+		if (key == 0L) {
+			return containsZero;
+		}
+		int mask = keys.length - 1;
+		for (int index = LongIntHashMap.getIndex(key, shift);; index = (index + 1) & mask) {
+			long k = keys[index];
+			if (k == key) {
+				return true;
+			}
+			if (k == 0L) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Removes a key.
+	 *
+	 * @param key the key
+	 * @return true if the key was contained
+	 */
+	public boolean remove(long key) {
+		if (key == 0L) {
+			boolean removed = containsZero;
+			containsZero = false;
+			return removed;
+		}
+		int mask = keys.length - 1;
+		for (int index = LongIntHashMap.getIndex(key, shift);; index = (index + 1) & mask) {
+			long k = keys[index];
+			if (k == key) {
+				shiftKeys(index);
+				--size;
+				return true;
+			}
+			if (k == 0L) {
+				return false;
+			}
+		}
+	}
+
+	public int size() {
+		return containsZero ? size + 1 : size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		containsZero = false;
+		size = 0;
+	}
+
+	/**
+	 * @return the keys in no particular order
+	 */
+	public long[] toArray() {
+		long[] result = new long[size()];
+		int n = 0;
+		if (containsZero) {
+			result[n++] = 0L;
+		}
+		for (long key : keys) {
+			if (key != 0L) {
+				result[n++] = key;
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	// Closes the gap at index by moving back the following keys of the cluster
+	// (deletion without tombstones).
+	private void shiftKeys(int index) {
+		int mask = keys.length - 1;
+		int gap = index;
+		for (int next = (gap + 1) & mask;; next = (next + 1) & mask) {
+			long key = keys[next];
+			if (key == 0L) {
+				keys[gap] = 0L;
+				return;
+			}
+			int home = LongIntHashMap.getIndex(key, shift);
+			// move the key if its home is not in the cyclic interval (gap, next]
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = key;
+				gap = next;
+			}
+		}
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		allocate(2 * oldKeys.length);
+		int mask = keys.length - 1;
+		for (long key : oldKeys) {
+			if (key != 0L) {
+				int index = LongIntHashMap.getIndex(key, shift);
+				while (keys[index] != 0L) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+			}
+		}
+	}
+}
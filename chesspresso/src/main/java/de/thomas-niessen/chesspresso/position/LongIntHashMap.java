@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.position;
+
+import java.util.Arrays;
+
+/**
+ * A map from longs to ints without boxing, tuned for the Zobrist hash codes of
+ * positions ({@link ImmutablePosition#getHashCode()}), e.g. to count how often
+ * positions occur. It uses open addressing with linear probing; keys and values
+ * are stored in a <code>long[]</code> and an <code>int[]</code>, which are
+ * doubled when they are two thirds full.
+ * 
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @author Thomas Niessen
+ */
+public final class LongIntHashMap {
+
+	@FunctionalInterface
+	public interface EntryConsumer {
+		void accept(long key, int value);
+	}
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys; // 0 marks a free slot
+	private int[] values;
+	private boolean containsZero;
+	private int zeroValue;
+	private int size; // without the zero key
+	private int shift;
+	private int maxSize;
+
+	/*
+	 * =========================================================================
+	 */
+
+	public LongIntHashMap() {
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * Creates a map which can hold the given number of keys without resizing.
+	 *
+	 * @param expectedSize the expected number of keys
+	 */
+	public LongIntHashMap(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("LongIntHashMap: negative size " + expectedSize);
+		}
+		allocate(getCapacity(expectedSize));
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		shift = Long.numberOfLeadingZeros(capacity - 1);
+		maxSize = capacity / 3 * 2;
+	}
+
+	static int getCapacity(int expectedSize) {
+		long capacity = Math.max(Long.highestOneBit(3L * expectedSize / 2) * 2, MIN_CAPACITY);
+		if (capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Too many keys: " + expectedSize);
+		}
+		return (int) capacity;
+	}
+
+	static int getIndex(long key, int shift) {
+		return (int) (AbstractPosition.mixHashCode(key) >>> shift);
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	/**
+	 * Returns the value of a key.
+	 *
+	 * @param key          the key
+	 * @param defaultValue the value returned if the key is not contained
+	 * @return the value of the key or <code>defaultValue</code>
+	 */
+	public int get(long key, int defaultValue) {
+		if (key == 0L) {
+			return containsZero ? zeroValue : defaultValue;
+		}
+		int mask = keys.length - 1;
+		for (int index = getIndex(key, shift);; index = (index + 1) & mask) {
+			long k = keys[index];
+			if (k == key) {
+				return values[index];
+			}
+			if (k == 0L) {
+				return defaultValue;
+			}
+		}
+	}
+
+	public boolean containsKey(long key) {
+		if (key == 0L) {
+			return containsZero;
+		}
+		int mask = keys.length - 1;
+		for (int index = getIndex(key, shift);; index = (index + 1) & mask) {
+			long k = keys[index];
+			if (k == key) {
+				return true;
+			}
+			if (k == 0L) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Sets the value of a key.
+	 *
+	 * @param key   the key
+	 * @param value the new value
+	 */
+	public void put(long key, int value) {
+		int index = findOrInsert(key);
+		if (index < 0) {
+			zeroValue = value;
+		} else {
+			values[index] = value;
+		}
+	}
+
+	/**
+	 * Adds to the value of a key; a key which is not contained is inserted with
+	 * value 0 first. <code>addTo(hashCode, 1)</code> counts positions.
+	 *
+	 * @param key       the key
+	 * @param increment the increment
+	 * @return the new value
+	 */
+	public int addTo(long key, int increment) {
+		int index = findOrInsert(key);
+		if (index < 0) {
+			return zeroValue += increment;
+		}
+		return values[index] += increment;
+	}
+
+	/**
+	 * Removes a key.
+	 *
+	 * @param key the key
+	 * @return true if the key was contained
+	 */
+	public boolean remove(long key) {
+		if (key == 0L) {
+			boolean removed = containsZero;
+			containsZero = false;
+			zeroValue = 0;
+			return removed;
+		}
+		int mask = keys.length - 1;
+		for (int index = getIndex(key, shift);; index = (index + 1) & mask) {
+			long k = keys[index];
+			if (k == key) {
+				shiftKeys(index);
+				--size;
+				return true;
+			}
+			if (k == 0L) {
+				return false;
+			}
+		}
+	}
+
+	public int size() {
+		return containsZero ? size + 1 : size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0L);
+		Arrays.fill(values, 0);
+		containsZero = false;
+		zeroValue = 0;
+		size = 0;
+	}
+
+	/**
+	 * Calls the consumer for all entries in no particular order. The map must not
+	 * be changed by the consumer.
+	 *
+	 * @param consumer the consumer
+	 */
+	public void forEach(EntryConsumer consumer) {
+		if (containsZero) {
+			consumer.accept(0L, zeroValue);
+		}
+		for (int index = 0; index < keys.length; ++index) {
+			if (keys[index] != 0L) {
+				consumer.accept(keys[index], values[index]);
+			}
+		}
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	// Returns the index of the key, or -1 for the zero key. A new key gets value 0.
+	private int findOrInsert(long key) {
+		if (key == 0L) {
+			containsZero = true;
+			return -1;
+		}
+		int mask = keys.length - 1;
+		for (int index = getIndex(key, shift);; index = (index + 1) & mask) {
+			long k = keys[index];
+			if (k == key) {
+				return index;
+			}
+			if (k == 0L) {
+				if (size + 1 > maxSize) {
+					resize();
+					return findOrInsert(key);
+				}
+				keys[index] = key;
+				values[index] = 0;
+				++size;
+				return index;
+			}
+		}
+	}
+
+	// Closes the gap at index by moving back the following entries of the cluster
+	// (deletion without tombstones).
+	private void shiftKeys(int index) {
+		int mask = keys.length - 1;
+		int gap = index;
+		for (int next = (gap + 1) & mask;; next = (next + 1) & mask) {
+			long key = keys[next];
+			if (key == 0L) {
+				keys[gap] = 0L;
+				values[gap] = 0;
+				return;
+			}
+			int home = getIndex(key, shift);
+			// move the entry if its home is not in the cyclic interval (gap, next]
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = key;
+				values[gap] = values[next];
+				gap = next;
+			}
+		}
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(2 * oldKeys.length);
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; ++i) {
+			long key = oldKeys[i];
+			if (key != 0L) {
+				int index = getIndex(key, shift);
+				while (keys[index] != 0L) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+				values[index] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.position;
+
+import chesspresso.Chess;
+
+/**
+ * Attack tables for sliding pieces based on (fancy) magic bitboards.
+ * 
+ * <p>
+ * For each square the relevant occupancy (the rays of the piece without the
+ * square itself and without the last square of each ray) is multiplied with a
+ * magic number. The highest bits of the product are an index into a table
+ * which contains the attack set for all occupancies with the same relevant
+ * blockers. So bishop, rook and queen attacks on an arbitrary board are a
+ * single table lookup each.
+ * 
+ * <p>
+ * The magic numbers were found by a trial-and-error search with a fixed seed.
+ * Since the tables are verified against a ray walk while they are filled, any
+ * broken magic number is detected when the class is initialized.
+ */
+final class MagicBitboards {
+
+	private MagicBitboards() {
+	}
+
+	private static final long[] BISHOP_MAGICS = {
+			0x0020428400408200L, 0x2008010104210004L, 0x02D0009200480190L, 0x0018158B00010100L,
+			0x02C4042132048008L, 0x020082202000C221L, 0x4000421050080009L, 0x0210140202022020L,
+			0x00C0101410042248L, 0x0405204800D48080L, 0x3800C89200420002L, 0x180844124A020440L,
+			0x04403410A8002221L, 0x4040209004200400L, 0x084004020202A204L, 0x3010002104022000L,
+			0x00200240A9110900L, 0x2302800404080210L, 0x0204188800240010L, 0x8048000C01401200L,
+			0x120C001A11040900L, 0x0000401200500440L, 0x00004040840420A0L, 0x0020930822880804L,
+			0x4044401090900161L, 0x0034100015210804L, 0x8004100009010120L, 0x48C8080000820500L,
+			0x0080848004002000L, 0x0801004012005044L, 0x000080902C040400L, 0x0004009005004100L,
+			0x0B103010048A0200L, 0x8004100203181A00L, 0x0800140200100080L, 0x8401010800910040L,
+			0x0840010011290040L, 0x40100214202E1000L, 0x0842040040010840L, 0x0028010040010860L,
+			0x00080202A2051000L, 0x4200841008084204L, 0x0021120110000D02L, 0x48C1004208000084L,
+			0x0010088100414400L, 0x0021101000420580L, 0x0010040558401410L, 0x200C0C82A1050205L,
+			0x0011108820088000L, 0x0001011910120402L, 0x1580008608091248L, 0x8010018020880C02L,
+			0x20A1101032088480L, 0x0080100408082800L, 0x28100401140401C0L, 0x8002102200930012L,
+			0x4001040082080200L, 0x082200A498081808L, 0x000508610080D003L, 0x0052020044842402L,
+			0x4800A00140C84840L, 0x5000000848080820L, 0x0101086004240040L, 0x0028280808005014L };
+
+	private static final long[] ROOK_MAGICS = {
+			0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+			0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+			0x0400800040008021L, 0x0400400020005000L, 0x8240801000200080L, 0x8611001004200900L,
+			0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+			0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+			0x0001818014000800L, 0xA002010100080400L, 0x0080240001020870L, 0x0001020004048845L,
+			0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+			0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+			0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+			0x4540040080800800L, 0x0002001004040020L, 0x0281195814001002L, 0x1240800040800100L,
+			0x0880042000524004L, 0x02C080410206002CL, 0x0801200241050010L, 0x8400080010008080L,
+			0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+			0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+			0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+			0x8044110480002441L, 0x2008110084402202L, 0x90806005090010C1L, 0x000420310A004A42L,
+			0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L };
+
+	private static final long[] BISHOP_MASKS = new long[Chess.NUM_OF_SQUARES];
+	private static final long[] ROOK_MASKS = new long[Chess.NUM_OF_SQUARES];
+	private static final int[] BISHOP_SHIFTS = new int[Chess.NUM_OF_SQUARES];
+	private static final int[] ROOK_SHIFTS = new int[Chess.NUM_OF_SQUARES];
+	private static final int[] BISHOP_OFFSETS = new int[Chess.NUM_OF_SQUARES];
+	private static final int[] ROOK_OFFSETS = new int[Chess.NUM_OF_SQUARES];
+
+	// All attack sets are stored in one table per piece; the offsets above point to the part of a square.
+	private static final long[] BISHOP_TABLE;
+	private static final long[] ROOK_TABLE;
+
+	private static final int[][] BISHOP_STEPS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+	private static final int[][] ROOK_STEPS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+
+	static {
+		BISHOP_TABLE = new long[initMasks(BISHOP_STEPS, BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS)];
+		ROOK_TABLE = new long[initMasks(ROOK_STEPS, ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS)];
+		initTable(BISHOP_STEPS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS, BISHOP_TABLE);
+		initTable(ROOK_STEPS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, ROOK_TABLE);
+	}
+
+	/**
+	 * Computes the relevant occupancy masks, the shifts and the table offsets.
+	 *
+	 * @return the total size of the table
+	 */
+	private static int initMasks(int[][] steps, long[] masks, int[] shifts, int[] offsets) {
+		int size = 0;
+		for (int sqi = Chess.A1; sqi <= Chess.H8; ++sqi) {
+			long mask = 0L;
+			for (int[] step : steps) {
+				int row = Chess.sqiToRow(sqi) + step[0];
+				int col = Chess.sqiToCol(sqi) + step[1];
+				// the last square of a ray never blocks anything
+				while (isOnBoard(row + step[0], col + step[1])) {
+					mask |= 1L << Chess.coorToSqi(col, row);
+					row += step[0];
+					col += step[1];
+				}
+			}
+			masks[sqi] = mask;
+			shifts[sqi] = Chess.NUM_OF_SQUARES - Long.bitCount(mask);
+			offsets[sqi] = size;
+			size += 1 << Long.bitCount(mask);
+		}
+		return size;
+	}
+
+	private static void initTable(int[][] steps, long[] masks, long[] magics, int[] shifts, int[] offsets, long[] table) {
+		for (int sqi = Chess.A1; sqi <= Chess.H8; ++sqi) {
+			long mask = masks[sqi];
+			long occupancy = 0L;
+			do { // enumerate all subsets of the mask (carry-rippler)
+				long attacks = walkRays(sqi, occupancy, steps);
+				int index = offsets[sqi] + (int) ((occupancy * magics[sqi]) >>> shifts[sqi]);
+				if (table[index] != 0L && table[index] != attacks) {
+					throw new IllegalStateException("MagicBitboards: bad magic number for square " + Chess.sqiToStr(sqi));
+				}
+				table[index] = attacks;
+				occupancy = (occupancy - mask) & mask;
+			} while (occupancy != 0L);
+		}
+	}
+
+	private static long walkRays(int sqi, long occupancy, int[][] steps) {
+		long attacks = 0L;
+		for (int[] step : steps) {
+			int row = Chess.sqiToRow(sqi) + step[0];
+			int col = Chess.sqiToCol(sqi) + step[1];
+			while (isOnBoard(row, col)) {
+				long bb = 1L << Chess.coorToSqi(col, row);
+				attacks |= bb;
+				if ((occupancy & bb) != 0L) {
+					break;
+				}
+				row += step[0];
+				col += step[1];
+			}
+		}
+		return attacks;
+	}
+
+	private static boolean isOnBoard(int row, int col) {
+		return row >= 0 && row < Chess.NUM_OF_ROWS && col >= 0 && col < Chess.NUM_OF_COLS;
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	/**
+	 * Returns the squares attacked by a bishop on <code>sqi</code>.
+	 *
+	 * @param sqi       the square of the bishop
+	 * @param occupancy all pieces on the board
+	 * @return the attacked squares, including the first blocker of each ray
+	 */
+	static long bishopAttacks(int sqi, long occupancy) {
+		return BISHOP_TABLE[BISHOP_OFFSETS[sqi]
+				+ (int) (((occupancy & BISHOP_MASKS[sqi]) * BISHOP_MAGICS[sqi]) >>> BISHOP_SHIFTS[sqi])];
+	}
+
+	/**
+	 * Returns the squares attacked by a rook on <code>sqi</code>.
+	 *
+	 * @param sqi       the square of the rook
+	 * @param occupancy all pieces on the board
+	 * @return the attacked squares, including the first blocker of each ray
+	 */
+	static long rookAttacks(int sqi, long occupancy) {
+		return ROOK_TABLE[ROOK_OFFSETS[sqi] + (int) (((occupancy & ROOK_MASKS[sqi]) * ROOK_MAGICS[sqi]) >>> ROOK_SHIFTS[sqi])];
+	}
+
+	/**
+	 * Returns the squares attacked by a queen on <code>sqi</code>.
+	 *
+	 * @param sqi       the square of the queen
+	 * @param occupancy all pieces on the board
+	 * @return the attacked squares, including the first blocker of each ray
+	 */
+	static long queenAttacks(int sqi, long occupancy) {
+		return bishopAttacks(sqi, occupancy) | rookAttacks(sqi, occupancy);
+	}
+}
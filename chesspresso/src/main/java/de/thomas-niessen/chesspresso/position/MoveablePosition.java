@@ -24,6 +24,14 @@ import chesspresso.position.PositionImpl.PosInternalState;
  * 
  */
 public interface MoveablePosition extends MutablePosition {
+
+	/**
+	 * An upper bound for the number of legal moves in a position. A
+	 * <code>short[]</code> of this size is always large enough for the methods
+	 * which fill a caller-supplied array with moves.
+	 */
+	int MAX_NUMBER_OF_MOVES = 256;
+
 	void doMove(short move) throws IllegalMoveException;
 
 	void doMove(Move move) throws IllegalMoveException;
@@ -36,6 +44,85 @@ public interface MoveablePosition extends MutablePosition {
 
 	Move getNextMove(short moveAsShort);
 
+	/**
+	 * Appends the SAN of <code>moveAsShort</code>, including the check or mate
+	 * sign, to <code>sb</code>. The move must be legal in this position; it is
+	 * described without creating a {@link Move}, and without being executed
+	 * unless it gives check or is a castle.
+	 *
+	 * @param moveAsShort the move
+	 * @param sb          the StringBuilder
+	 */
+	void appendSAN(short moveAsShort, StringBuilder sb);
+
+	/**
+	 * Appends the LAN of <code>moveAsShort</code> to <code>sb</code>, see
+	 * {@link #appendSAN(short, StringBuilder)}.
+	 *
+	 * @param moveAsShort the move
+	 * @param sb          the StringBuilder
+	 */
+	void appendLAN(short moveAsShort, StringBuilder sb);
+
+	/**
+	 * Makes this position a copy of <code>source</code>. For the standard
+	 * implementation only the bitboards, king squares, flags and hash code are
+	 * copied, which is much cheaper than
+	 * {@link #setPositionSnapshot(ImmutablePosition)}. Listeners of
+	 * <code>source</code> are not copied.
+	 *
+	 * @param source      the position to be copied
+	 * @param withHistory whether the moves which can be undone are copied, too;
+	 *                    otherwise no move can be undone in the copy
+	 */
+	void copyFrom(MoveablePosition source, boolean withHistory);
+
+	/**
+	 * Sets this position to a snapshot of a later position of the same game, e.g.
+	 * a {@link CompactPosition} taken after some moves. Unlike
+	 * {@link #setPositionSnapshot(ImmutablePosition)}, the ply offset is kept, so
+	 * the plies up to the snapshot count as played, but they cannot be undone.
+	 *
+	 * @param snapshot the later position; its ply number must not be less than
+	 *                 the ply offset of this position
+	 */
+	void restorePositionSnapshot(ImmutablePosition snapshot);
+
+	/**
+	 * Returns how often the current position has occurred in the moves which can
+	 * be undone, including the current occurrence. Positions are compared by
+	 * their hash codes, and only the positions since the last capture or pawn
+	 * move are taken into account.
+	 *
+	 * @return the number of occurrences, at least 1
+	 */
+	int getRepetitionCount();
+
+	/**
+	 * Returns whether the current position has occurred at least three times,
+	 * see {@link #getRepetitionCount()}.
+	 */
+	boolean isThreefoldRepetition();
+
+	/**
+	 * Returns whether a draw can be claimed by the fifty-move rule, i.e. whether
+	 * the half move clock is at least 100 and the position is not a mate.
+	 */
+	boolean isFiftyMoveDraw();
+
+	/**
+	 * Returns a hash code which is the same for all positions which are equal up
+	 * to a symmetry of the board. For pawnless positions without castling rights
+	 * all eight symmetries (mirrors, flips and rotations) are taken into
+	 * account; with pawns only the left-right mirror is used, and with castling
+	 * rights the result is {@link #getHashCode()}. Colors and the side to play
+	 * are never exchanged. Use it e.g. to deduplicate endgame positions without
+	 * generating the symmetrical positions.
+	 *
+	 * @return the minimum of the hash codes of the symmetrical positions
+	 */
+	long getCanonicalHashCode();
+
 	boolean canUndoMove();
 
 	boolean undoMove();
@@ -48,11 +135,84 @@ public interface MoveablePosition extends MutablePosition {
 
 	short[] getAllMoves();
 
+	/**
+	 * Writes all legal moves into <code>moves</code>, starting at index 0. No
+	 * array is allocated, so the same array can be used for many calls.
+	 *
+	 * @param moves the array to be filled, see {@link #MAX_NUMBER_OF_MOVES}
+	 * @return the number of legal moves
+	 */
+	int getAllMoves(short[] moves);
+
+	/**
+	 * Writes all legal capturing moves (including en passant) into
+	 * <code>moves</code>, starting at index 0.
+	 *
+	 * @param moves the array to be filled, see {@link #MAX_NUMBER_OF_MOVES}
+	 * @return the number of legal capturing moves
+	 */
+	int getAllCapturingMoves(short[] moves);
+
+	/**
+	 * Writes all legal non-capturing moves into <code>moves</code>, starting at
+	 * index 0.
+	 *
+	 * @param moves the array to be filled, see {@link #MAX_NUMBER_OF_MOVES}
+	 * @return the number of legal non-capturing moves
+	 */
+	int getAllNonCapturingMoves(short[] moves);
+
+	/**
+	 * Returns whether <code>move</code> is legal in this position. The test is
+	 * done directly on the move, i.e. without generating the legal moves and
+	 * without executing the move. Null moves are not legal in this sense.
+	 *
+	 * @param move the move to be tested, e.g. a result of
+	 *             {@link #getMove(int, int, int)}
+	 * @return whether the move is legal
+	 */
+	boolean isLegal(short move);
+
 	short getPawnMove(int colFrom, int to, int promoPiece);
 
+	/**
+	 * Returns the legal move of a piece (not a pawn) of the side to play to
+	 * <code>to</code>, as described by SAN. If the origin is not given, the
+	 * first piece which can move legally to <code>to</code> is taken.
+	 *
+	 * @param piece   the piece, e.g. {@link chesspresso.Chess#KNIGHT}
+	 * @param colFrom the column of the origin or {@link chesspresso.Chess#NO_COL}
+	 * @param rowFrom the row of the origin or {@link chesspresso.Chess#NO_ROW}
+	 * @param to      the target square
+	 * @return the move, or {@link Move#ILLEGAL_MOVE} if no such piece can move
+	 *         legally to <code>to</code>
+	 */
 	short getPieceMove(int piece, int colFrom, int rowFrom, int to);
 
 	long getAttackersBB(int sqi, int color);
 
+	/**
+	 * Returns the static exchange evaluation of <code>move</code>: the material
+	 * balance for the side to play after all profitable captures on the target
+	 * square, where both sides capture with their least valuable piece first and
+	 * may stop at any time. Pieces behind the capturing pieces are taken into
+	 * account (x-rays), pins are ignored. The position is not changed. Values are
+	 * 100 for a pawn, 300 for a knight, 325 for a bishop, 500 for a rook and 900
+	 * for a queen.
+	 *
+	 * @param move a legal move; for a non-capturing move the result is 0 or the
+	 *             loss of the moved piece
+	 * @return the material gain for the side to play
+	 */
+	int see(short move);
+
+	/**
+	 * Returns whether the static exchange evaluation of <code>move</code> is at
+	 * least <code>threshold</code>. This is equivalent to
+	 * <code>see(move) >= threshold</code>, but in many cases the result follows
+	 * from the first capture alone.
+	 */
+	boolean seeGE(short move, int threshold);
+
 	PosInternalState getInternalState();
 }
@@ -33,6 +33,32 @@ public interface MutablePosition extends ImmutablePosition {
 
 	void setStone(int sqi, int stone);
 
+	/**
+	 * Sets all stones and the properties of the position at once. Compared with
+	 * a sequence of {@link #setStone(int, int)} calls, the hash code is computed
+	 * in one pass and listeners are notified only once. The variant is not
+	 * changed; for Chess960 call {@link #setChess960CastlingFiles(int, int, int)}
+	 * afterwards.
+	 *
+	 * @param bitBoards     the squares of each stone, indexed by
+	 *                      <code>stone - Chess.MIN_STONE</code>; the entry of
+	 *                      <code>NO_STONE</code> is ignored
+	 * @param toPlay        the color to play
+	 * @param castles       the castling possibilities
+	 * @param sqiEP         the en passant square or <code>NO_SQUARE</code>
+	 * @param halfMoveClock the half move clock
+	 * @param plyNumber     the ply number of the position
+	 * @param validate      whether the position is validated
+	 * @throws IllegalPositionException if <code>validate</code> is set and the
+	 *                                  position is not valid
+	 * @throws IllegalArgumentException if the array has not one entry for each
+	 *                                  stone, if a square is set in two
+	 *                                  bitboards or if a color has more than one
+	 *                                  king
+	 */
+	void setBitBoards(long[] bitBoards, int toPlay, int castles, int sqiEP, int halfMoveClock, int plyNumber,
+			boolean validate) throws IllegalPositionException;
+
 	void setCastles(int castles);
 
 	void setSqiEP(int sqiEP);
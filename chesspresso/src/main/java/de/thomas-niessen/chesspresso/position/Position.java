@@ -37,6 +37,9 @@ import chesspresso.position.PositionListener.ChangeType;
  * Thereafter, the notification of the listeners is activated again, unless the algorithm was run within another 
  * algorithm.
  * 
+ * A headless position, see {@link #createHeadless()}, has no listeners at all. It is meant for batch
+ * processing, where nobody listens to the changes.
+ * 
  * This class is not thread-safe.
  * 
  * @author Thomas Niessen
@@ -49,6 +52,7 @@ public final class Position implements MoveablePosition, Serializable {
 
 	private final MoveablePosition impl;
 	private final List<PositionListener> listeners = new ArrayList<>();
+	private final boolean headless;
 	private int algorithmDepth;
 
 	public interface Algorithm {
@@ -56,8 +60,7 @@ public final class Position implements MoveablePosition, Serializable {
 	}
 
 	public Position() {
-		impl = new PositionImpl();
-		algorithmDepth = 0;
+		this(new PositionImpl());
 	}
 
 	public Position(String fen, boolean validate) throws InvalidFenException {
@@ -74,6 +77,32 @@ public final class Position implements MoveablePosition, Serializable {
 		setPositionSnapshot(pos);
 	}
 
+	private Position(MoveablePosition impl) {
+		this(impl, false);
+	}
+
+	private Position(MoveablePosition impl, boolean headless) {
+		this.impl = impl;
+		this.headless = headless;
+		algorithmDepth = 0;
+	}
+
+	/**
+	 * Creates an empty position, like {@link #Position()}, which never notifies
+	 * listeners; {@link #addPositionListener(PositionListener)} throws an
+	 * IllegalStateException. So no listener dispatch takes place and no FEN
+	 * strings are computed for listeners.
+	 *
+	 * @return a headless position
+	 */
+	public static Position createHeadless() {
+		return new Position(new PositionImpl(), true);
+	}
+
+	public boolean isHeadless() {
+		return headless;
+	}
+
 	public static Position createInitialPosition() {
 		try {
 			return new Position(FEN.START_POSITION, false);
@@ -122,6 +151,21 @@ public final class Position implements MoveablePosition, Serializable {
 		return impl.getNextMove(moveAsShort);
 	}
 
+	@Override
+	public void appendSAN(short moveAsShort, StringBuilder sb) {
+		impl.appendSAN(moveAsShort, sb);
+	}
+
+	@Override
+	public long getCanonicalHashCode() {
+		return impl.getCanonicalHashCode();
+	}
+
+	@Override
+	public void appendLAN(short moveAsShort, StringBuilder sb) {
+		impl.appendLAN(moveAsShort, sb);
+	}
+
 	@Override
 	public void clear() {
 		impl.clear();
@@ -134,10 +178,59 @@ public final class Position implements MoveablePosition, Serializable {
 		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, fen);
 	}
 
+	/**
+	 * Sets the position from the FEN in <code>fen</code> between
+	 * <code>start</code> (inclusive) and <code>end</code> (exclusive). Unlike
+	 * {@link #initFromFEN(String, boolean)} no String needs to be created, e.g.
+	 * when reading EPD files in bulk.
+	 *
+	 * @param fen      the character sequence which contains the FEN
+	 * @param start    the index of the first character of the FEN
+	 * @param end      the index after the last character of the FEN
+	 * @param validate whether the resulting position is validated
+	 * @throws InvalidFenException if the FEN is invalid
+	 */
+	public void initFromFEN(CharSequence fen, int start, int end, boolean validate) throws InvalidFenException {
+		FEN.initFromFEN(impl, fen, start, end, validate);
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
+	}
+
 	@Override
 	public void setPositionSnapshot(ImmutablePosition position) {
 		impl.setPositionSnapshot(position);
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
+	}
+
+	@Override
+	public void copyFrom(MoveablePosition source, boolean withHistory) {
+		impl.copyFrom(source, withHistory);
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
+	}
+
+	@Override
+	public void restorePositionSnapshot(ImmutablePosition snapshot) {
+		impl.restorePositionSnapshot(snapshot);
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
+	}
+
+	/**
+	 * Returns a copy of this position without listeners. This is the cheap way to
+	 * fork a position, e.g. for parallel workers.
+	 *
+	 * @param withHistory whether the moves which can be undone are copied, too
+	 * @return the copy
+	 */
+	public Position copy(boolean withHistory) {
+		if (impl instanceof PositionImpl positionImpl) {
+			return new Position(new PositionImpl(positionImpl, withHistory));
+		}
+		Position copy = new Position();
+		copy.impl.copyFrom(impl, withHistory);
+		return copy;
+	}
+
+	MoveablePosition getImplementation() {
+		return impl;
 	}
 
 	@Override
@@ -154,6 +247,13 @@ public final class Position implements MoveablePosition, Serializable {
 		}
 	}
 
+	@Override
+	public void setBitBoards(long[] bitBoards, int toPlay, int castles, int sqiEP, int halfMoveClock, int plyNumber,
+			boolean validate) throws IllegalPositionException {
+		impl.setBitBoards(bitBoards, toPlay, castles, sqiEP, halfMoveClock, plyNumber, validate);
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
+	}
+
 	@Override
 	public void setCastles(int castles) {
 		if (getCastles() != castles) {
@@ -220,91 +320,91 @@ public final class Position implements MoveablePosition, Serializable {
 	@Override
 	public void moveAllUp() {
 		impl.moveAllUp();
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void moveAllDown() {
 		impl.moveAllDown();
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void moveAllLeft() {
 		impl.moveAllLeft();
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void moveAllRight() {
 		impl.moveAllRight();
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void rotate90DegreesClockwise() {
 		impl.rotate90DegreesClockwise();
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void moveUp(Collection<Integer> squares) {
 		impl.moveUp(squares);
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void moveDown(Collection<Integer> squares) {
 		impl.moveDown(squares);
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void moveLeft(Collection<Integer> squares) {
 		impl.moveLeft(squares);
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void moveRight(Collection<Integer> squares) {
 		impl.moveRight(squares);
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void rotate90DegreesClockwise(Collection<Integer> squares) {
 		impl.rotate90DegreesClockwise(squares);
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public final void flipAboutA1H8Diagonal() {
 		impl.flipAboutA1H8Diagonal();
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public final void flipAboutA8H1Diagonal() {
 		impl.flipAboutA8H1Diagonal();
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public final void flipAboutA1H8Diagonal(Collection<Integer> squares) {
 		impl.flipAboutA1H8Diagonal(squares);
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public final void flipAboutA8H1Diagonal(Collection<Integer> squares) {
 		impl.flipAboutA8H1Diagonal(squares);
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
 	public void invert() {
 		impl.invert();
-		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, impl.getFEN());
+		firePositionChanged(ChangeType.START_POS_CHANGED, Move.NO_MOVE, getFenForListeners());
 	}
 
 	@Override
@@ -382,6 +482,16 @@ public final class Position implements MoveablePosition, Serializable {
 		return impl.getHashCode();
 	}
 
+	@Override
+	public int hashCode() {
+		return impl.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj == this || impl.equals(obj);
+	}
+
 	@Override
 	public int getWhitesKingSquare() {
 		return impl.getWhitesKingSquare();
@@ -479,6 +589,21 @@ public final class Position implements MoveablePosition, Serializable {
 		return impl.getLastMove();
 	}
 
+	@Override
+	public int getRepetitionCount() {
+		return impl.getRepetitionCount();
+	}
+
+	@Override
+	public boolean isThreefoldRepetition() {
+		return impl.isThreefoldRepetition();
+	}
+
+	@Override
+	public boolean isFiftyMoveDraw() {
+		return impl.isFiftyMoveDraw();
+	}
+
 	@Override
 	public boolean canUndoMove() {
 		return impl.canUndoMove();
@@ -517,6 +642,26 @@ public final class Position implements MoveablePosition, Serializable {
 		return impl.getAllMoves();
 	}
 
+	@Override
+	public int getAllMoves(short[] moves) {
+		return impl.getAllMoves(moves);
+	}
+
+	@Override
+	public int getAllCapturingMoves(short[] moves) {
+		return impl.getAllCapturingMoves(moves);
+	}
+
+	@Override
+	public int getAllNonCapturingMoves(short[] moves) {
+		return impl.getAllNonCapturingMoves(moves);
+	}
+
+	@Override
+	public boolean isLegal(short move) {
+		return impl.isLegal(move);
+	}
+
 	@Override
 	public short getPawnMove(int colFrom, int to, int promoPiece) {
 		return impl.getPawnMove(colFrom, to, promoPiece);
@@ -530,6 +675,9 @@ public final class Position implements MoveablePosition, Serializable {
 	// everything for PositionListeners
 
 	public void addPositionListener(PositionListener listener) {
+		if (headless) {
+			throw new IllegalStateException("Position::addPositionListener: a headless position has no listeners.");
+		}
 		if (!listeners.contains(listener)) {
 			if (listener instanceof RelatedGame) {
 				// there is at most one RelatedGame and if so, it is the first element
@@ -549,7 +697,7 @@ public final class Position implements MoveablePosition, Serializable {
 	}
 
 	private void firePositionChanged() {
-		if (!isInsideAlgorithm()) {
+		if (!isInsideAlgorithm() && !listeners.isEmpty()) {
 			for (PositionListener listener : listeners) {
 				listener.positionChanged(ChangeType.EXTENT_UNSPECIFIED, Move.NO_MOVE, null);
 			}
@@ -557,6 +705,9 @@ public final class Position implements MoveablePosition, Serializable {
 	}
 
 	private void firePositionChanged(ChangeType type, short move, String fen) {
+		if (listeners.isEmpty()) {
+			return;
+		}
 		if (isInsideAlgorithm()) { // inside an algorithm only the RelatedGame, which is always the first element, is informed
 			if (!listeners.isEmpty() && listeners.get(0) instanceof RelatedGame) {
 				listeners.get(0).positionChanged(type, move, fen);
@@ -568,11 +719,26 @@ public final class Position implements MoveablePosition, Serializable {
 		}
 	}
 
+	// the FEN is only computed if somebody listens
+	private String getFenForListeners() {
+		return listeners.isEmpty() ? null : impl.getFEN();
+	}
+
 	@Override
 	public long getAttackersBB(int sqi, int color) {
 		return impl.getAttackersBB(sqi, color);
 	}
 
+	@Override
+	public int see(short move) {
+		return impl.see(move);
+	}
+
+	@Override
+	public boolean seeGE(short move, int threshold) {
+		return impl.seeGE(move, threshold);
+	}
+
 	@Override
 	public PosInternalState getInternalState() {
 		return impl.getInternalState();
@@ -38,7 +38,7 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 	private static long numIsStaleMate = 0;
 	private static long numGetAllMoves = 0;
 	private static long numPositions = 0;
-	private static long numGetPinnedDirection = 0;
+	private static long numGetPinnedPieces = 0;
 	private static long numDoMove = 0;
 	private static long numLongsBackuped = 0;
 	private static long numUndoMove = 0;
@@ -98,38 +98,8 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 	}
 
 	private static int getFirstSqi(long bb) {
-		// inefficient for bb == 0L, test outside (in while loop condition)
-		// if (bb == 0L) {
-		// return Chess.NO_SQUARE;
-		// } else {
-		int sqi = 0;
-		if ((bb & 0xFFFFFFFFL) == 0L) {
-			bb >>>= 32;
-			sqi += 32;
-		} // BS: is this good for all VMs?
-		if ((bb & 0xFFFFL) == 0L) {
-			bb >>>= 16;
-			sqi += 16;
-		}
-		if ((bb & 0xFFL) == 0L) {
-			bb >>>= 8;
-			sqi += 8;
-		}
-		if ((bb & 0xFL) == 0L) {
-			bb >>>= 4;
-			sqi += 4;
-		}
-		if ((bb & 0x3L) == 0L) {
-			bb >>>= 2;
-			sqi += 2;
-		}
-		if ((bb & 0x1L) == 0L) {
-			bb >>>= 1;
-			sqi += 1;
-		}
-		// while ((bb % 2L) == 0L) {bb >>>= 1; sqi++;} change from % to &
-		return sqi;
-		// }
+		// undefined for bb == 0L, test outside (in while loop condition)
+		return Long.numberOfTrailingZeros(bb);
 	}
 
 	@SuppressWarnings("unused")
@@ -220,15 +190,76 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		}
 	}
 
-	private static boolean isDiagonal(int dir) {
-		return (dir & 1) == 0;
+	private static int getOppositeDir(int dir) {
+		return (dir + 4) & 7;
 	}
 
-	private static boolean areDirectionsParallel(int dir1, int dir2) {
-		if (dir1 == NO_DIR || dir2 == NO_DIR) {
-			return false;
+	/**
+	 * Returns the squares of the line through <code>sqi</code> in direction
+	 * <code>dir</code> (both ways), not including <code>sqi</code> itself.
+	 */
+	private static long getLine(int sqi, int dir) {
+		return RAY[sqi][dir] | RAY[sqi][getOppositeDir(dir)];
+	}
+
+	/*
+	 * =========================================================================
+	 */
+	// board transformations, the first eight are the symmetries of the board
+
+	private static final int IDENTITY = 0, MIRROR = 1, FLIP = 2, ROTATE_180 = 3, FLIP_A1H8 = 4, FLIP_A8H1 = 5,
+			ROTATE_90 = 6, ROTATE_270 = 7, SHIFT_UP = 8, SHIFT_DOWN = 9, SHIFT_LEFT = 10, SHIFT_RIGHT = 11;
+	private static final int NUM_OF_SYMMETRIES = 8;
+
+	private static long transform(long bb, int transformation) {
+		return switch (transformation) {
+		case IDENTITY -> bb;
+		case MIRROR -> mirrorLeftRight(bb);
+		case FLIP -> Long.reverseBytes(bb);
+		case ROTATE_180 -> Long.reverse(bb);
+		case FLIP_A1H8 -> flipA1H8(bb);
+		case FLIP_A8H1 -> flipA8H1(bb);
+		case ROTATE_90 -> Long.reverseBytes(flipA1H8(bb)); // clockwise
+		case ROTATE_270 -> flipA1H8(Long.reverseBytes(bb));
+		case SHIFT_UP -> bb << 8;
+		case SHIFT_DOWN -> bb >>> 8;
+		case SHIFT_LEFT -> (bb >>> 1) & ~ofCol(Chess.NUM_OF_COLS - 1);
+		case SHIFT_RIGHT -> (bb << 1) & ~ofCol(0);
+		default -> throw new IllegalArgumentException("PositionImpl::transform: unknown transformation " + transformation);
+		};
+	}
+
+	private static int transformSqi(int sqi, int transformation) {
+		if (sqi == Chess.NO_SQUARE) {
+			return Chess.NO_SQUARE;
 		}
-		return (dir1 & 3) == (dir2 & 3);
+		long bb = transform(ofSquare(sqi), transformation);
+		return (bb == 0L ? Chess.NO_SQUARE : getFirstSqi(bb));
+	}
+
+	// delta swaps, see https://www.chessprogramming.org/Flipping_Mirroring_and_Rotating
+	private static long mirrorLeftRight(long bb) {
+		bb = ((bb >>> 1) & 0x5555555555555555L) | ((bb & 0x5555555555555555L) << 1);
+		bb = ((bb >>> 2) & 0x3333333333333333L) | ((bb & 0x3333333333333333L) << 2);
+		return ((bb >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((bb & 0x0F0F0F0F0F0F0F0FL) << 4);
+	}
+
+	private static long flipA1H8(long bb) {
+		long t = 0x0F0F0F0F00000000L & (bb ^ (bb << 28));
+		bb ^= t ^ (t >>> 28);
+		t = 0x3333000033330000L & (bb ^ (bb << 14));
+		bb ^= t ^ (t >>> 14);
+		t = 0x5500550055005500L & (bb ^ (bb << 7));
+		return bb ^ t ^ (t >>> 7);
+	}
+
+	private static long flipA8H1(long bb) {
+		long t = bb ^ (bb << 36);
+		bb ^= 0xF0F0F0F00F0F0F0FL & (t ^ (bb >>> 36));
+		t = 0xCCCC0000CCCC0000L & (bb ^ (bb << 18));
+		bb ^= t ^ (t >>> 18);
+		t = 0xAA00AA00AA00AA00L & (bb ^ (bb << 9));
+		return bb ^ t ^ (t >>> 9);
 	}
 
 	private static int getDir(int from, int to) {
@@ -383,11 +414,12 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 	private int myBakIndex;
 	private short[] myMoveStack;
 	private int myMoveStackIndex;
+	private long[] myHashStack; // the hash codes before the moves of myMoveStack, for repetitions
 
 	private Variant myVariant = Variant.STANDARD;
 	private int myChess960CastlingFiles = 0;
 
-	private final short[] allMoves = new short[256]; // buffer for getAllMoves,
+	private final short[] allMoves = new short[MAX_NUMBER_OF_MOVES]; // buffer for getAllMoves,
 	// allocated once for efficiency
 	// TN: Is 256 large enough? It is said that
 	// "R6R/3Q4/1Q4Q1/4Q3/2Q4Q/Q4Q2/pp1Q4/kBNN1KB1 w - - 0 1"
@@ -451,6 +483,7 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		}
 		myBakStack = new long[4 * bufferLength]; // on average, we need about 3.75 longs to back up a position
 		myMoveStack = new short[bufferLength];
+		myHashStack = new long[bufferLength];
 		clear();
 	}
 
@@ -464,6 +497,16 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		FEN.initFromFEN(this, fen, strict);
 	}
 
+	PositionImpl(PositionImpl source, boolean withHistory) {
+		if (PROFILE) {
+			numPositions++;
+		}
+		myBakStack = new long[withHistory ? source.myBakStack.length : 4 * 60];
+		myMoveStack = new short[withHistory ? source.myMoveStack.length : 60];
+		myHashStack = new long[myMoveStack.length];
+		copyFrom(source, withHistory);
+	}
+
 	/*
 	 * =========================================================================
 	 */
@@ -471,7 +514,15 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 	@Override
 	public void setPositionSnapshot(ImmutablePosition position) {
 		clear(); // Needed. Because there is no direct way to reset the ply number.
-		super.setPositionSnapshot(position);
+		long[] bitBoards = new long[Chess.MAX_STONE - Chess.MIN_STONE + 1];
+		for (int sqi = 0; sqi < Chess.NUM_OF_SQUARES; sqi++) {
+			bitBoards[position.getStone(sqi) - Chess.MIN_STONE] |= ofSquare(sqi);
+		}
+		setStones(bitBoards);
+		setCastles(position.getCastles());
+		setSqiEP(position.getSqiEP());
+		setToPlay(position.getToPlay());
+		setHalfMoveClock(position.getHalfMoveClock());
 		this.myVariant = position.getVariant();
 		if (myVariant == Variant.CHESS960) {
 			setChess960CastlingFiles(position.getChess960KingFile(), position.getChess960QueensideRookFile(),
@@ -480,14 +531,310 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		this.plyOffset = position.getPlyNumber();
 	}
 
+	@Override
+	public void restorePositionSnapshot(ImmutablePosition snapshot) {
+		int offset = plyOffset;
+		int plies = snapshot.getPlyNumber() - offset;
+		if (plies < 0 || plies > PLY_NUMBER_MASK) {
+			throw new IllegalArgumentException("PositionImpl::restorePositionSnapshot: illegal ply number "
+					+ snapshot.getPlyNumber() + " for ply offset " + offset);
+		}
+		setPositionSnapshot(snapshot);
+		plyOffset = offset;
+		myFlags |= (long) plies << PLY_NUMBER_SHIFT;
+	}
+
+	@Override
+	public void copyFrom(MoveablePosition source, boolean withHistory) {
+		if (source instanceof Position position) {
+			source = position.getImplementation();
+		}
+		if (source == this) {
+			if (!withHistory) {
+				clearStacks();
+			}
+			return;
+		}
+		if (!(source instanceof PositionImpl impl)) {
+			setPositionSnapshot(source);
+			return;
+		}
+
+		myBbWhites = impl.myBbWhites;
+		myBbBlacks = impl.myBbBlacks;
+		myBbPawns = impl.myBbPawns;
+		myBbKnights = impl.myBbKnights;
+		myBbBishops = impl.myBbBishops;
+		myBbRooks = impl.myBbRooks;
+		myWhiteKing = impl.myWhiteKing;
+		myBlackKing = impl.myBlackKing;
+		myFlags = impl.myFlags;
+		myHashCode = impl.myHashCode;
+		myVariant = impl.myVariant;
+		myChess960CastlingFiles = impl.myChess960CastlingFiles;
+		plyOffset = impl.plyOffset;
+
+		if (withHistory) {
+			// the undo part of the stacks only; the redo part ends at the first 0
+			if (myBakStack.length < impl.myBakStack.length) {
+				myBakStack = new long[impl.myBakStack.length];
+			} else {
+				clearFrom(myBakStack, impl.myBakIndex);
+			}
+			System.arraycopy(impl.myBakStack, 0, myBakStack, 0, impl.myBakIndex);
+			myBakIndex = impl.myBakIndex;
+			if (myMoveStack.length < impl.myMoveStack.length) {
+				myMoveStack = new short[impl.myMoveStack.length];
+				myHashStack = new long[impl.myMoveStack.length];
+			} else {
+				clearFrom(myMoveStack, impl.myMoveStackIndex);
+			}
+			System.arraycopy(impl.myMoveStack, 0, myMoveStack, 0, impl.myMoveStackIndex);
+			System.arraycopy(impl.myHashStack, 0, myHashStack, 0, impl.myMoveStackIndex);
+			myMoveStackIndex = impl.myMoveStackIndex;
+		} else {
+			clearStacks();
+		}
+	}
+
+	private static void clearFrom(long[] stack, int index) {
+		while (index < stack.length && stack[index] != 0L) {
+			stack[index] = 0L;
+			++index;
+		}
+	}
+
+	private static void clearFrom(short[] stack, int index) {
+		while (index < stack.length && stack[index] != 0) {
+			stack[index] = 0;
+			++index;
+		}
+	}
+
 	/*
 	 * =========================================================================
 	 */
 
 	@Override
 	public void clear() {
-		super.clear();
+		// the empty board with white to play has hash code 0, see AbstractPosition
+		myBbWhites = 0L;
+		myBbBlacks = 0L;
+		myBbPawns = 0L;
+		myBbKnights = 0L;
+		myBbBishops = 0L;
+		myBbRooks = 0L;
+		myWhiteKing = Chess.NO_SQUARE;
+		myBlackKing = Chess.NO_SQUARE;
+		myHashCode = 0L;
 		myFlags = 0L;
+		plyOffset = 0;
+		clearStacks();
+	}
+
+	@Override
+	public void setBitBoards(long[] bitBoards, int toPlay, int castles, int sqiEP, int halfMoveClock, int plyNumber,
+			boolean validate) throws IllegalPositionException {
+		checkBitBoards(bitBoards);
+		setStones(bitBoards);
+		setProperties(toPlay, castles, sqiEP, halfMoveClock, plyNumber, validate);
+	}
+
+	private void setStones(long[] bitBoards) {
+		long whites = 0L, blacks = 0L;
+		for (int stone = Chess.MIN_STONE; stone < Chess.NO_STONE; ++stone) {
+			whites |= bitBoards[stone - Chess.MIN_STONE];
+		}
+		for (int stone = Chess.NO_STONE + 1; stone <= Chess.MAX_STONE; ++stone) {
+			blacks |= bitBoards[stone - Chess.MIN_STONE];
+		}
+		long bbWhiteQueens = bitBoards[Chess.WHITE_QUEEN - Chess.MIN_STONE];
+		long bbBlackQueens = bitBoards[Chess.BLACK_QUEEN - Chess.MIN_STONE];
+		long bbWhiteKing = bitBoards[Chess.WHITE_KING - Chess.MIN_STONE];
+		long bbBlackKing = bitBoards[Chess.BLACK_KING - Chess.MIN_STONE];
+		// if there are several kings of a color, the last one wins as with setStone
+		int whiteKing = (bbWhiteKing == 0L ? Chess.NO_SQUARE : 63 - Long.numberOfLeadingZeros(bbWhiteKing));
+		int blackKing = (bbBlackKing == 0L ? Chess.NO_SQUARE : 63 - Long.numberOfLeadingZeros(bbBlackKing));
+		if (Long.bitCount(bbWhiteKing) > 1) {
+			whites &= ~bbWhiteKing | ofSquare(whiteKing);
+		}
+		if (Long.bitCount(bbBlackKing) > 1) {
+			blacks &= ~bbBlackKing | ofSquare(blackKing);
+		}
+		setBitBoards(whites, blacks,
+				bitBoards[Chess.WHITE_PAWN - Chess.MIN_STONE] | bitBoards[Chess.BLACK_PAWN - Chess.MIN_STONE],
+				bitBoards[Chess.WHITE_KNIGHT - Chess.MIN_STONE] | bitBoards[Chess.BLACK_KNIGHT - Chess.MIN_STONE],
+				bitBoards[Chess.WHITE_BISHOP - Chess.MIN_STONE] | bitBoards[Chess.BLACK_BISHOP - Chess.MIN_STONE]
+						| bbWhiteQueens | bbBlackQueens,
+				bitBoards[Chess.WHITE_ROOK - Chess.MIN_STONE] | bitBoards[Chess.BLACK_ROOK - Chess.MIN_STONE] | bbWhiteQueens
+						| bbBlackQueens,
+				whiteKing, blackKing);
+	}
+
+	/**
+	 * Replaces all stones by the given bitboards in one step. As for
+	 * <code>setStone</code>, the stacks and the cached check information are
+	 * cleared. The en passant square should be set afterwards, since its
+	 * contribution to the hash code depends on the pawns.
+	 *
+	 * @param whites    the white stones, including the king
+	 * @param blacks    the black stones, including the king
+	 * @param pawns     the pawns of both colors
+	 * @param knights   the knights of both colors
+	 * @param bishops   the bishops and queens of both colors
+	 * @param rooks     the rooks and queens of both colors
+	 * @param whiteKing the square of the white king or NO_SQUARE
+	 * @param blackKing the square of the black king or NO_SQUARE
+	 */
+	void setBitBoards(long whites, long blacks, long pawns, long knights, long bishops, long rooks, int whiteKing,
+			int blackKing) {
+		myHashCode ^= getStonesHashCode();
+		myBbWhites = whites;
+		myBbBlacks = blacks;
+		myBbPawns = pawns;
+		myBbKnights = knights;
+		myBbBishops = bishops;
+		myBbRooks = rooks;
+		myWhiteKing = whiteKing;
+		myBlackKing = blackKing;
+		myHashCode ^= getStonesHashCode();
+
+		clearStacks();
+		// the same as in setStone
+		myFlags &= ~(CHECK_MASK << CHECK_SHIFT);
+		myFlags &= ~(CAN_MOVE_MASK << CAN_MOVE_SHIFT);
+		myFlags &= ~((long) PLY_NUMBER_MASK << PLY_NUMBER_SHIFT);
+	}
+
+	private long getStonesHashCode() {
+		return getStonesHashCode(IDENTITY);
+	}
+
+	/**
+	 * Returns the part of the hash code which the stones contribute after the
+	 * board is transformed.
+	 **/
+	private long getStonesHashCode(int transformation) {
+		long hashCode = 0L;
+		for (int stone = Chess.MIN_STONE; stone <= Chess.MAX_STONE; ++stone) {
+			if (stone == Chess.NO_STONE || stone == Chess.WHITE_KING || stone == Chess.BLACK_KING) {
+				continue;
+			}
+			long bb = transform(getBitBoard(stone), transformation);
+			while (bb != 0L) {
+				hashCode ^= HASH_MOD[getFirstSqi(bb)][stone - Chess.MIN_STONE];
+				bb &= bb - 1;
+			}
+		}
+		int whiteKing = transformSqi(myWhiteKing, transformation);
+		if (whiteKing != Chess.NO_SQUARE) {
+			hashCode ^= HASH_MOD[whiteKing][Chess.WHITE_KING - Chess.MIN_STONE];
+		}
+		int blackKing = transformSqi(myBlackKing, transformation);
+		if (blackKing != Chess.NO_SQUARE) {
+			hashCode ^= HASH_MOD[blackKing][Chess.BLACK_KING - Chess.MIN_STONE];
+		}
+		return hashCode;
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	private void transformStones(int transformation) {
+		setBitBoards(transform(myBbWhites, transformation), transform(myBbBlacks, transformation),
+				transform(myBbPawns, transformation), transform(myBbKnights, transformation),
+				transform(myBbBishops, transformation), transform(myBbRooks, transformation),
+				transformSqi(myWhiteKing, transformation), transformSqi(myBlackKing, transformation));
+		// as in AbstractMutablePosition
+		setCastles(NO_CASTLES);
+		setSqiEP(Chess.NO_SQUARE);
+		setHalfMoveClock(0);
+	}
+
+	@Override
+	public void moveAllUp() {
+		transformStones(SHIFT_UP);
+	}
+
+	@Override
+	public void moveAllDown() {
+		transformStones(SHIFT_DOWN);
+	}
+
+	@Override
+	public void moveAllLeft() {
+		transformStones(SHIFT_LEFT);
+	}
+
+	@Override
+	public void moveAllRight() {
+		transformStones(SHIFT_RIGHT);
+	}
+
+	@Override
+	public void rotate90DegreesClockwise() {
+		transformStones(ROTATE_90);
+	}
+
+	@Override
+	public void flipAboutA1H8Diagonal() {
+		transformStones(FLIP_A1H8);
+	}
+
+	@Override
+	public void flipAboutA8H1Diagonal() {
+		transformStones(FLIP_A8H1);
+	}
+
+	@Override
+	public void invert() {
+		int sqiEP = getSqiEP();
+		int castles = getCastles();
+		setBitBoards(transform(myBbBlacks, FLIP), transform(myBbWhites, FLIP), transform(myBbPawns, FLIP),
+				transform(myBbKnights, FLIP), transform(myBbBishops, FLIP), transform(myBbRooks, FLIP),
+				transformSqi(myBlackKing, FLIP), transformSqi(myWhiteKing, FLIP));
+		setSqiEP(transformSqi(sqiEP, FLIP));
+		int newCastles = NO_CASTLES;
+		if ((castles & WHITE_SHORT_CASTLE) != 0) {
+			newCastles |= BLACK_SHORT_CASTLE;
+		}
+		if ((castles & WHITE_LONG_CASTLE) != 0) {
+			newCastles |= BLACK_LONG_CASTLE;
+		}
+		if ((castles & BLACK_SHORT_CASTLE) != 0) {
+			newCastles |= WHITE_SHORT_CASTLE;
+		}
+		if ((castles & BLACK_LONG_CASTLE) != 0) {
+			newCastles |= WHITE_LONG_CASTLE;
+		}
+		setCastles(newCastles);
+		toggleToPlay();
+	}
+
+	@Override
+	public long getCanonicalHashCode() {
+		if (getCastles() != NO_CASTLES) {
+			return myHashCode; // castling is not invariant under any symmetry
+		}
+		// hash code without stones and en passant, i.e. only the side to play
+		long baseHashCode = myHashCode ^ getStonesHashCode();
+		int hashColEP = getHashColEP();
+		if (hashColEP != Chess.NO_SQUARE) {
+			baseHashCode ^= HASH_EP_MOD[hashColEP];
+		}
+		long canonicalHashCode = myHashCode;
+		for (int transformation = MIRROR; transformation < NUM_OF_SYMMETRIES; ++transformation) {
+			if (myBbPawns != 0L && transformation != MIRROR) {
+				break; // pawns allow the left-right mirror only
+			}
+			long hashCode = baseHashCode ^ getStonesHashCode(transformation);
+			if (hashColEP != Chess.NO_SQUARE) {
+				hashCode ^= HASH_EP_MOD[Chess.NUM_OF_COLS - 1 - hashColEP];
+			}
+			canonicalHashCode = Math.min(canonicalHashCode, hashCode);
+		}
+		return canonicalHashCode;
 	}
 
 	private void clearStacks() {
@@ -516,11 +863,18 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 
 	@Override
 	public void initFromFEN(String fen, boolean validate) throws InvalidFenException {
-		clear();
-		clearStacks();
 		FEN.initFromFEN(this, fen, validate);
 	}
 
+	/**
+	 * Sets the position from the FEN in <code>fen</code> between
+	 * <code>start</code> (inclusive) and <code>end</code> (exclusive), see
+	 * {@link FEN#initFromFEN(MutablePosition, CharSequence, int, int, boolean)}.
+	 */
+	public void initFromFEN(CharSequence fen, int start, int end, boolean validate) throws InvalidFenException {
+		FEN.initFromFEN(this, fen, start, end, validate);
+	}
+
 	/*
 	 * =========================================================================
 	 */
@@ -569,6 +923,22 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		return myHashCode;
 	}
 
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof Position position) {
+			obj = position.getImplementation();
+		}
+		if (!(obj instanceof PositionImpl other)) {
+			return super.equals(obj);
+		}
+		// the hash code covers the en passant column, the flags contain ply number
+		// and half move clock, which are not compared
+		return other == this || (myHashCode == other.myHashCode && myBbWhites == other.myBbWhites
+				&& myBbBlacks == other.myBbBlacks && myBbPawns == other.myBbPawns && myBbKnights == other.myBbKnights
+				&& myBbBishops == other.myBbBishops && myBbRooks == other.myBbRooks && myWhiteKing == other.myWhiteKing
+				&& myBlackKing == other.myBlackKing && getToPlay() == other.getToPlay() && getCastles() == other.getCastles());
+	}
+
 	@Override
 	public int getStone(int sqi) {
 		if (PROFILE) {
@@ -650,7 +1020,7 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		return Chess.NOBODY;
 	}
 
-	private long getBitBoard(int stone) {
+	long getBitBoard(int stone) {
 		return switch (stone) {
 		case Chess.NO_STONE -> 0L;
 		case Chess.WHITE_KING -> ofSquare(myWhiteKing);
@@ -1264,6 +1634,9 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 			short[] newMoveStack = new short[myMoveStack.length * 2];
 			System.arraycopy(myMoveStack, 0, newMoveStack, 0, myMoveStack.length);
 			myMoveStack = newMoveStack;
+			long[] newHashStack = new long[newMoveStack.length];
+			System.arraycopy(myHashStack, 0, newHashStack, 0, myHashStack.length);
+			myHashStack = newHashStack;
 		}
 	}
 
@@ -1297,6 +1670,7 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		myBakStack[myBakIndex] = 0L; // prevent redos
 
 		checkMoveStack();
+		myHashStack[myMoveStackIndex] = myBakStack[myBakIndex - 7];
 		myMoveStack[myMoveStackIndex++] = OTHER_CHANGE_MOVE;
 	}
 
@@ -1320,6 +1694,7 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		long bakBishops = myBbBishops;
 		long bakRooks = myBbRooks;
 		long bakFlags = (((myFlags << 6) | myWhiteKing) << 6) | myBlackKing;
+		long bakHashCode = myHashCode;
 
 		myBakStack[myBakIndex++] = myHashCode;
 
@@ -1329,6 +1704,7 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 
 		/*---------- move pieces ----------*/
 		setMove(move);
+		myHashStack[myMoveStackIndex - 1] = bakHashCode;
 
 		/*---------- compare state and push changes ----------*/
 		// only push data that have actually changed
@@ -1878,6 +2254,33 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		return !isCheck() && !canMove();
 	}
 
+	@Override
+	public int getRepetitionCount() {
+		// Only positions after the last irreversible move, i.e. within the half move
+		// clock, and with the same player to move can be equal to the current one.
+		int first = Math.max(myMoveStackIndex - getHalfMoveClock(), 0);
+		int count = 1;
+		for (int index = myMoveStackIndex - 2; index >= first; index -= 2) {
+			if (myMoveStack[index] == OTHER_CHANGE_MOVE || myMoveStack[index + 1] == OTHER_CHANGE_MOVE) {
+				break;
+			}
+			if (myHashStack[index] == myHashCode) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public boolean isThreefoldRepetition() {
+		return getRepetitionCount() >= 3;
+	}
+
+	@Override
+	public boolean isFiftyMoveDraw() {
+		return getHalfMoveClock() >= 100 && !isMate();
+	}
+
 	@Override
 	public boolean isInsufficientMaterial() {
 		return myBbPawns == 0L && myBbRooks == 0L && Long.bitCount(myBbKnights) + Long.bitCount(myBbBishops) <= 1;
@@ -1965,13 +2368,14 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 			bb &= ofRow(rowFrom);
 		}
 
+		boolean capturing = !isSquareEmpty(to);
 		while (bb != 0L) {
 			int from = getFirstSqi(bb);
 			if (DEBUG) {
 				System.out.print("  trying from: " + from);
 			}
-			int pinnedDir = getPinnedDirection(from, getToPlay());
-			if (attacks(from, to) && (pinnedDir == NO_DIR || areDirectionsParallel(pinnedDir, DIR[from][to]))) {
+			// attacks is the cheap pre-test, isLegal excludes pinned pieces and moves not resolving a check
+			if (attacks(from, to) && isLegal(Move.getRegularMove(from, to, capturing))) {
 				if (DEBUG) {
 					System.out.println(" ok");
 				}
@@ -1984,6 +2388,29 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 
 	@Override
 	public Move getNextMove(short moveAsShort) {
+		if (Move.isValid(moveAsShort) && !Move.isNullMove(moveAsShort) && !Move.isCastle(moveAsShort)
+				&& !Move.isCastleChess960(moveAsShort)) {
+			int from = Move.getFromSqi(moveAsShort);
+			int to = Move.getToSqi(moveAsShort);
+			int piece = getPiece(from);
+			if (piece != Chess.NO_PIECE && getColor(from) == getToPlay() && isLegal(moveAsShort)) {
+				// the move is built in the position before the move, only a mate test
+				// requires to execute it
+				boolean isCheck = givesCheck(moveAsShort, piece);
+				boolean isMate = false;
+				if (isCheck) {
+					try {
+						isMate = setsMate(moveAsShort);
+					} catch (IllegalMoveException e) {
+						e.printStackTrace();
+						return null;
+					}
+				}
+				return createMove(moveAsShort, piece, getAmbiguousPieces(moveAsShort, piece), isCheck, isMate,
+						getToPlay() == Chess.WHITE);
+			}
+		}
+
 		try {
 			doMove(moveAsShort);
 		} catch (IllegalMoveException e) {
@@ -1995,6 +2422,159 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		return move;
 	}
 
+	@Override
+	public void appendSAN(short moveAsShort, StringBuilder sb) {
+		appendNextMove(moveAsShort, sb, true);
+	}
+
+	@Override
+	public void appendLAN(short moveAsShort, StringBuilder sb) {
+		appendNextMove(moveAsShort, sb, false);
+	}
+
+	/**
+	 * Formats the move from the same data as {@link #getNextMove(short)}, but
+	 * without creating a Move. Castles and null moves are executed to find the
+	 * check and mate signs.
+	 **/
+	private void appendNextMove(short moveAsShort, StringBuilder sb, boolean san) {
+		int piece = Chess.NO_PIECE;
+		boolean isCheck, isMate = false;
+		try {
+			if (Move.isValid(moveAsShort) && !Move.isNullMove(moveAsShort) && !Move.isCastle(moveAsShort)
+					&& !Move.isCastleChess960(moveAsShort)) {
+				int from = Move.getFromSqi(moveAsShort);
+				piece = getPiece(from);
+				if (piece == Chess.NO_PIECE || getColor(from) != getToPlay() || !isLegal(moveAsShort)) {
+					throw new IllegalMoveException(moveAsShort);
+				}
+				isCheck = givesCheck(moveAsShort, piece);
+				if (isCheck) {
+					isMate = setsMate(moveAsShort);
+				}
+			} else {
+				doMove(moveAsShort);
+				isCheck = isCheck();
+				isMate = isMate();
+				undoMove();
+			}
+		} catch (IllegalMoveException e) {
+			e.printStackTrace();
+			return;
+		}
+		if (san) {
+			long bbAmbiguous = getAmbiguousPieces(moveAsShort, piece);
+			Move.appendSAN(sb, moveAsShort, piece, getSanColFrom(moveAsShort, piece, bbAmbiguous),
+					getSanRowFrom(moveAsShort, piece, bbAmbiguous), isCheck, isMate);
+		} else {
+			Move.appendLAN(sb, moveAsShort, piece, isCheck, isMate);
+		}
+	}
+
+	/**
+	 * Returns whether the (legal) move, which gives check, sets mate.
+	 **/
+	private boolean setsMate(short move) throws IllegalMoveException {
+		doMove(move);
+		boolean isMate = !canMove();
+		undoMove();
+		return isMate;
+	}
+
+	/**
+	 * Returns whether the (legal, non-castling) move gives check. The test is done
+	 * with the occupancy after the move, so discovered checks are found, too.
+	 **/
+	private boolean givesCheck(short move, int piece) {
+		int kingSqi = (getToPlay() == Chess.WHITE ? myBlackKing : myWhiteKing);
+		if (kingSqi == Chess.NO_SQUARE) {
+			return false;
+		}
+		int from = Move.getFromSqi(move);
+		int to = Move.getToSqi(move);
+		long bbOwn = ((getToPlay() == Chess.WHITE ? myBbWhites : myBbBlacks) & ~ofSquare(from)) | ofSquare(to);
+		long bbOccupied = ((myBbWhites | myBbBlacks) & ~ofSquare(from)) | ofSquare(to);
+		if (Move.isEPMove(move)) {
+			bbOccupied &= ~ofSquare(to + (getToPlay() == Chess.WHITE ? -Chess.NUM_OF_COLS : Chess.NUM_OF_COLS));
+		}
+		int newPiece = (Move.isPromotion(move) ? Move.getPromotionPiece(move) : piece);
+		long bbTo = ofSquare(to);
+
+		long bbBishops = (myBbBishops & ~ofSquare(from) & ~bbTo) | (newPiece == Chess.BISHOP || newPiece == Chess.QUEEN ? bbTo : 0L);
+		long bbRooks = (myBbRooks & ~ofSquare(from) & ~bbTo) | (newPiece == Chess.ROOK || newPiece == Chess.QUEEN ? bbTo : 0L);
+		if ((MagicBitboards.bishopAttacks(kingSqi, bbOccupied) & bbBishops & bbOwn) != 0L
+				|| (MagicBitboards.rookAttacks(kingSqi, bbOccupied) & bbRooks & bbOwn) != 0L) {
+			return true;
+		}
+		if (newPiece == Chess.KNIGHT) {
+			return (KNIGHT_ATTACKS[to] & ofSquare(kingSqi)) != 0L;
+		} else if (newPiece == Chess.PAWN) {
+			return ((getToPlay() == Chess.WHITE ? WHITE_PAWN_ATTACKS[to] : BLACK_PAWN_ATTACKS[to]) & ofSquare(kingSqi)) != 0L;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the other pieces of the same kind which can move to the destination
+	 * of <code>move</code>. Pinned pieces which cannot leave their pin ray are not
+	 * taken into account (see the SAN rules of the PGN standard). Must be called
+	 * in the position before the move.
+	 **/
+	private long getAmbiguousPieces(short move, int piece) {
+		if (piece == Chess.PAWN || piece == Chess.KING) {
+			return 0L; // pawns are described by the file anyway, kings are unique
+		}
+		int from = Move.getFromSqi(move);
+		int to = Move.getToSqi(move);
+		long bb = getBitBoard(Chess.pieceToStone(piece, getToPlay())) & getAllAttackers(to, getToPlay(), false)
+				& ~ofSquare(from);
+		if (bb != 0L) {
+			long bbPinned = getPinnedPieces(getToPlay()) & bb;
+			while (bbPinned != 0L) {
+				int sqi = getFirstSqi(bbPinned);
+				if ((getPinRay(sqi, getToPlay()) & ofSquare(to)) == 0L) {
+					bb &= ~ofSquare(sqi);
+				}
+				bbPinned &= bbPinned - 1;
+			}
+		}
+		return bb;
+	}
+
+	private static Move createMove(short move, int piece, long bbAmbiguous, boolean isCheck, boolean isMate,
+			boolean whiteMove) {
+		return new Move(move, piece, getSanColFrom(move, piece, bbAmbiguous), getSanRowFrom(move, piece, bbAmbiguous),
+				isCheck, isMate, whiteMove);
+	}
+
+	/**
+	 * Returns the file of the SAN disambiguation: for a pawn capture, or if the
+	 * file separates the piece from the ambiguous pieces, or if neither file nor
+	 * rank does.
+	 **/
+	private static int getSanColFrom(short move, int piece, long bbAmbiguous) {
+		int from = Move.getFromSqi(move);
+		if (piece == Chess.PAWN) {
+			return Move.isCapturing(move) ? Chess.sqiToCol(from) : Chess.NO_COL;
+		} else if (bbAmbiguous != 0L && ((bbAmbiguous & ofCol(Chess.sqiToCol(from))) == 0L
+				|| (bbAmbiguous & ofRow(Chess.sqiToRow(from))) != 0L)) {
+			return Chess.sqiToCol(from);
+		}
+		return Chess.NO_COL;
+	}
+
+	/**
+	 * Returns the rank of the SAN disambiguation: if an ambiguous piece is on the
+	 * same file.
+	 **/
+	private static int getSanRowFrom(short move, int piece, long bbAmbiguous) {
+		int from = Move.getFromSqi(move);
+		if (piece != Chess.PAWN && (bbAmbiguous & ofCol(Chess.sqiToCol(from))) != 0L) {
+			return Chess.sqiToRow(from);
+		}
+		return Chess.NO_ROW;
+	}
+
 	@Override
 	public short getPawnMove(int colFrom, int to, int promoPiece) {
 		if (to == getSqiEP()) {
@@ -2012,7 +2592,11 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 
 	@Override
 	public short getPieceMove(int piece, int colFrom, int rowFrom, int to) {
-		return Move.getRegularMove(getFromSqi(piece, colFrom, rowFrom, to), to, !isSquareEmpty(to));
+		int from = getFromSqi(piece, colFrom, rowFrom, to);
+		if (from == Chess.NO_SQUARE) {
+			return Move.ILLEGAL_MOVE;
+		}
+		return Move.getRegularMove(from, to, !isSquareEmpty(to));
 	}
 
 	/*
@@ -2032,31 +2616,11 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 
 		undoMove();
 
-		int from = Move.getFromSqi(move);
-		int to = Move.getToSqi(move);
-		boolean isCapturing = Move.isCapturing(move);
-		int stone = getStone(from);
-
-		int colFrom = Chess.NO_COL;
-		int rowFrom = Chess.NO_ROW;
-
-		long bb = getBitBoard(stone) & getAllAttackers(to, getToPlay(), false) & ~ofSquare(from);
-		if (!isCapturing) {
-			bb &= (~myBbPawns);
-		}
-		if (bb != 0L) {
-			if ((bb & ofCol(Chess.sqiToCol(from))) == 0L) {
-				colFrom = Chess.sqiToCol(from);
-			} else if ((bb & ofRow(Chess.sqiToRow(from))) == 0L) {
-				rowFrom = Chess.sqiToRow(from);
-			} else {
-				colFrom = Chess.sqiToCol(from);
-				rowFrom = Chess.sqiToRow(from);
-			}
-		}
+		int piece = getPiece(Move.getFromSqi(move));
+		long bbAmbiguous = getAmbiguousPieces(move, piece);
 
 		redoMove(); // TN: doMove(move); is fine, too.
-		return new Move(move, Chess.stoneToPiece(stone), colFrom, rowFrom, isCheck(), isMate(), getToPlay() == Chess.BLACK);
+		return createMove(move, piece, bbAmbiguous, isCheck(), isMate(), getToPlay() == Chess.BLACK);
 	}
 
 	/*
@@ -2064,65 +2628,65 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 	 */
 
 	/**
-	 * Returns the direction in which a piece on <code>sqi</code> is pinned in front
-	 * of the king of <code>color</code>. Returns <code>NO_DIR</code> if piece is
-	 * not pinned.
+	 * Returns the pieces of <code>color</code> which are pinned in front of their
+	 * king. The move generators compute this bitboard once per call and restrict
+	 * the pinned pieces to <code>getPinRay</code>.
 	 *
-	 * @param sqi   the square for which the pinned direction should be computed. It
-	 *              is not required that there is a piece on the square
-	 * @param color of king with respect to which the pinned direction is computed
+	 * @param color of king with respect to which the pinned pieces are computed
 	 **/
-	private int getPinnedDirection(int sqi, int color) {
+	private long getPinnedPieces(int color) {
 		if (PROFILE) {
-			numGetPinnedDirection++;
+			numGetPinnedPieces++;
 		}
 
 		int kingSqi = (color == Chess.WHITE ? myWhiteKing : myBlackKing);
-		long bbSqi = ofSquare(sqi);
-
-		if ((QUEEN_ATTACKS[kingSqi] & bbSqi) == 0L) {
-			return NO_DIR;
+		if (kingSqi == Chess.NO_SQUARE) {
+			return 0L;
 		}
 
-		int kingDir = DIR[kingSqi][sqi];
-		long kingDirRim = RIM_BOARD[kingDir];
-		if ((kingDirRim & bbSqi) != 0L) {
-			return NO_DIR; // there is nothing behind piece
-		}
+		long bbOwn = (color == Chess.WHITE ? myBbWhites : myBbBlacks);
+		long bbOpponent = (color == Chess.WHITE ? myBbBlacks : myBbWhites);
 
-		long bbTarget;
-		if (isDiagonal(kingDir)) {
-			bbTarget = BISHOP_ATTACKS[kingSqi] & myBbBishops & (color == Chess.WHITE ? myBbBlacks : myBbWhites);
-		} else {
-			bbTarget = ROOK_ATTACKS[kingSqi] & myBbRooks & (color == Chess.WHITE ? myBbBlacks : myBbWhites);
-		}
-		if (bbTarget == 0L) {
-			return NO_DIR;
+		// opponent sliders which would attack the king if there were no own pieces
+		long bbSnipers = ((MagicBitboards.bishopAttacks(kingSqi, bbOpponent) & myBbBishops)
+				| (MagicBitboards.rookAttacks(kingSqi, bbOpponent) & myBbRooks)) & bbOpponent;
+		long bbPinned = 0L;
+		while (bbSnipers != 0L) {
+			long bbBetween = SQUARES_BETWEEN[kingSqi][getFirstSqi(bbSnipers)] & bbOwn;
+			if (isExactlyOneBitSet(bbBetween)) {
+				bbPinned |= bbBetween;
+			}
+			bbSnipers &= bbSnipers - 1;
 		}
+		return bbPinned;
+	}
 
-		long bbAllPieces = myBbWhites | myBbBlacks;
-		if ((SQUARES_BETWEEN[kingSqi][sqi] & bbAllPieces) != 0L) {
-			return NO_DIR;
-		}
+	/**
+	 * Returns the squares on the line through the king of <code>color</code> and
+	 * <code>sqi</code>. A piece pinned on <code>sqi</code> can move only to these
+	 * squares.
+	 **/
+	private long getPinRay(int sqi, int color) {
+		int kingSqi = (color == Chess.WHITE ? myWhiteKing : myBlackKing);
+		return getLine(kingSqi, DIR[kingSqi][sqi]);
+	}
 
-		// System.out.println("now checking behind sqi");
-		long bb = bbSqi;
-		int vector = DIR_SHIFT[kingDir];
-		do {
-			// bb not on rim checked above -> can increment without test
-			if (vector < 0) {
-				bb >>>= -vector;
-			} else {
-				bb <<= vector;
-			}
-			if ((bbTarget & bb) != 0L) {
-				return kingDir;
-			}
-			if ((bbAllPieces & bb) != 0L) {
-				return NO_DIR;
-			}
-		} while ((kingDirRim & bb) == 0L);
-		return NO_DIR;
+	/**
+	 * Returns whether the en passant capture from <code>from</code> to
+	 * <code>to</code> leaves the own king in check. Two pawns leave the board
+	 * line of the king at once, e.g. on the fifth rank, so that this cannot be
+	 * decided by the pinned pieces alone.
+	 **/
+	private boolean isEnPassantExposingKing(int from, int to) {
+		int kingSqi = (getToPlay() == Chess.WHITE ? myWhiteKing : myBlackKing);
+		if (kingSqi == Chess.NO_SQUARE) {
+			return false;
+		}
+		int capturedSqi = to + (getToPlay() == Chess.WHITE ? -Chess.NUM_OF_COLS : Chess.NUM_OF_COLS);
+		long bbOpponent = (getToPlay() == Chess.WHITE ? myBbBlacks : myBbWhites) & ~ofSquare(capturedSqi);
+		long bbOccupied = ((myBbWhites | myBbBlacks) & ~ofSquare(from) & ~ofSquare(capturedSqi)) | ofSquare(to);
+		return (MagicBitboards.rookAttacks(kingSqi, bbOccupied) & myBbRooks & bbOpponent) != 0L
+				|| (MagicBitboards.bishopAttacks(kingSqi, bbOccupied) & myBbBishops & bbOpponent) != 0L;
 	}
 
 	private static int sign(int i) {
@@ -2151,36 +2715,21 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 			return (KING_ATTACKS[from] & bbTo) != 0;
 		}
 		case Chess.BISHOP, Chess.ROOK, Chess.QUEEN -> {
-			if ((piece == Chess.BISHOP && (BISHOP_ATTACKS[from] & bbTo) == 0)
-					|| (piece == Chess.ROOK && (ROOK_ATTACKS[from] & bbTo) == 0)) {
-				return false;
-			}
-			if (piece == Chess.QUEEN && (QUEEN_ATTACKS[from] & bbTo) == 0) {
-				return false;
-			}
-			long bbFrom = ofSquare(from);
-			int vector = DIR_SHIFT[DIR[from][to]];
-			if (vector < 0) {
-				bbFrom >>>= -vector;
-			} else {
-				bbFrom <<= vector;
-			}
-			while (bbFrom != bbTo) {
-				if (((myBbWhites | myBbBlacks) & bbFrom) != 0) {
-					return false;
-				}
-				if (vector < 0) {
-					bbFrom >>>= -vector;
-				} else {
-					bbFrom <<= vector;
-				}
-			}
-			return true;
+			return (getSlidingAttacks(piece, from, myBbWhites | myBbBlacks) & bbTo) != 0L;
 		}
 		default -> throw new RuntimeException("Illegal piece: " + piece);
 		}
 	}
 
+	private static long getSlidingAttacks(int piece, int sqi, long bbOccupied) {
+		return switch (piece) {
+		case Chess.BISHOP -> MagicBitboards.bishopAttacks(sqi, bbOccupied);
+		case Chess.ROOK -> MagicBitboards.rookAttacks(sqi, bbOccupied);
+		case Chess.QUEEN -> MagicBitboards.queenAttacks(sqi, bbOccupied);
+		default -> 0L;
+		};
+	}
+
 	/*
 	 * =========================================================================
 	 */
@@ -2204,13 +2753,11 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		}
 
 		/*---------- sliding pieces ----------*/
-		long bbTargets = ((BISHOP_ATTACKS[sqi] & myBbBishops) | (ROOK_ATTACKS[sqi] & myBbRooks)) & bbAttackerPieces;
-		while (bbTargets != 0L) {
-			int from = getFirstSqi(bbTargets);
-			if ((SQUARES_BETWEEN[from][sqi] & bbAllPieces) == 0L) {
-				return true;
-			}
-			bbTargets &= bbTargets - 1;
+		if ((MagicBitboards.bishopAttacks(sqi, bbAllPieces) & myBbBishops & bbAttackerPieces) != 0L) {
+			return true;
+		}
+		if ((MagicBitboards.rookAttacks(sqi, bbAllPieces) & myBbRooks & bbAttackerPieces) != 0L) {
+			return true;
 		}
 
 		/*---------- king & pawns ----------*/
@@ -2243,17 +2790,14 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		attackers |= KNIGHT_ATTACKS[sqi] & bbAttackerPieces & myBbKnights;
 
 		/*---------- sliding pieces ----------*/
-		long bbTargets = ((BISHOP_ATTACKS[sqi] & myBbBishops) | (ROOK_ATTACKS[sqi] & myBbRooks)) & bbAttackerPieces;
-		while (bbTargets != 0L) {
-			int from = getFirstSqi(bbTargets);
-			long squaresInBetween = SQUARES_BETWEEN[from][sqi];
-			if ((squaresInBetween & bbAllPieces) == 0L) {
-				attackers |= ofSquare(from);
-				if (includeInbetweenSquares) {
-					attackers |= squaresInBetween;
-				}
+		long bbSliders = ((MagicBitboards.bishopAttacks(sqi, bbAllPieces) & myBbBishops)
+				| (MagicBitboards.rookAttacks(sqi, bbAllPieces) & myBbRooks)) & bbAttackerPieces;
+		attackers |= bbSliders;
+		if (includeInbetweenSquares) {
+			while (bbSliders != 0L) {
+				attackers |= SQUARES_BETWEEN[getFirstSqi(bbSliders)][sqi];
+				bbSliders &= bbSliders - 1;
 			}
-			bbTargets &= bbTargets - 1;
 		}
 
 		/*---------- pawns & king ----------*/
@@ -2284,17 +2828,13 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		long bbAllPieces = myBbWhites | myBbBlacks;
 
 		/*---------- sliding pieces ----------*/
-		long bbTargets = (BISHOP_ATTACKS[sqi] & myBbBishops) & bbAttackerPieces;
-		while (bbTargets != 0L) {
-			int from = getFirstSqi(bbTargets);
-			long squaresInBetween = SQUARES_BETWEEN[from][sqi];
-			if ((squaresInBetween & bbAllPieces) == 0L) {
-				attackers |= ofSquare(from);
-				if (includeInbetweenSquares) {
-					attackers |= squaresInBetween;
-				}
+		long bbSliders = MagicBitboards.bishopAttacks(sqi, bbAllPieces) & myBbBishops & bbAttackerPieces;
+		attackers |= bbSliders;
+		if (includeInbetweenSquares) {
+			while (bbSliders != 0L) {
+				attackers |= SQUARES_BETWEEN[getFirstSqi(bbSliders)][sqi];
+				bbSliders &= bbSliders - 1;
 			}
-			bbTargets &= bbTargets - 1;
 		}
 
 		/*---------- pawns ----------------*/
@@ -2323,22 +2863,18 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		long bbAllPieces = myBbWhites | myBbBlacks;
 
 		/*---------- sliding pieces ----------*/
-		long bbTargets = (ROOK_ATTACKS[sqi] & myBbRooks) & bbAttackerPieces;
-		while (bbTargets != 0L) {
-			int from = getFirstSqi(bbTargets);
-			long squaresInBetween = SQUARES_BETWEEN[from][sqi];
-			if ((squaresInBetween & bbAllPieces) == 0L) {
-				attackers |= ofSquare(from);
-				if (includeInbetweenSquares) {
-					attackers |= squaresInBetween;
-				}
+		long bbSliders = MagicBitboards.rookAttacks(sqi, bbAllPieces) & myBbRooks & bbAttackerPieces;
+		attackers |= bbSliders;
+		if (includeInbetweenSquares) {
+			while (bbSliders != 0L) {
+				attackers |= SQUARES_BETWEEN[getFirstSqi(bbSliders)][sqi];
+				bbSliders &= bbSliders - 1;
 			}
-			bbTargets &= bbTargets - 1;
 		}
 		return attackers;
 	}
 
-	private int getAllKnightMoves(int moveIndex, long bbTargets) {
+	private int getAllKnightMoves(int moveIndex, long bbTargets, long bbPinned) {
 		if (bbTargets == 0L) {
 			return moveIndex;
 		}
@@ -2346,19 +2882,18 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		long bbToPlay = (getToPlay() == Chess.WHITE ? myBbWhites : myBbBlacks);
 
 		/*---------- knights moves ----------*/
-		long bbPieces = myBbKnights & bbToPlay;
+		// a pinned knight can never move
+		long bbPieces = myBbKnights & bbToPlay & ~bbPinned;
 		while (bbPieces != 0L) {
 			int from = getFirstSqi(bbPieces);
-			if (getPinnedDirection(from, getToPlay()) == NO_DIR) {
-				long destSquares = KNIGHT_ATTACKS[from] & (~bbToPlay) & bbTargets;
-				while (destSquares != 0L) {
-					if (moveIndex == -1) {
-						return 1;
-					}
-					int to = getFirstSqi(destSquares);
-					allMoves[moveIndex++] = Move.getRegularMove(from, to, !isSquareEmpty(to));
-					destSquares &= destSquares - 1;
+			long destSquares = KNIGHT_ATTACKS[from] & (~bbToPlay) & bbTargets;
+			while (destSquares != 0L) {
+				if (moveIndex == -1) {
+					return 1;
 				}
+				int to = getFirstSqi(destSquares);
+				allMoves[moveIndex++] = Move.getRegularMove(from, to, !isSquareEmpty(to));
+				destSquares &= destSquares - 1;
 			}
 			bbPieces &= bbPieces - 1;
 		}
@@ -2366,52 +2901,29 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 	}
 
 	// TN: A method for bishop, queen and rook moves
-	private int getAllSlidingMoves(int moveIndex, long bbTargets, long bbPieces, int piece) {
+	private int getAllSlidingMoves(int moveIndex, long bbTargets, long bbPieces, int piece, long bbPinned) {
 		if (bbTargets == 0L) {
 			return moveIndex;
 		}
 
 		long bbToPlay = (getToPlay() == Chess.WHITE ? myBbWhites : myBbBlacks);
 		long bbNotToPlay = (getToPlay() == Chess.WHITE ? myBbBlacks : myBbWhites);
-
-		int dirStep = (piece == Chess.QUEEN ? 1 : 2);
-		int startDir = (piece == Chess.ROOK ? S : SW);
+		long bbAllPieces = myBbWhites | myBbBlacks;
 
 		while (bbPieces != 0L) {
 			int from = getFirstSqi(bbPieces);
-			int pinnedDir = getPinnedDirection(from, getToPlay());
-			for (int dir = startDir; dir < NUM_OF_DIRS; dir += dirStep) {
-				if ((RAY[from][dir] & bbTargets) != 0L) {
-					if (pinnedDir == NO_DIR || areDirectionsParallel(dir, pinnedDir)) {
-						int dirShift = DIR_SHIFT[dir];
-						long bb = ofSquare(from);
-						int to = from;
-						long rimBoard = RIM_BOARD[dir];
-						while ((bb & rimBoard) == 0L) {
-							if (dirShift < 0) {
-								bb >>>= -dirShift;
-							} else {
-								bb <<= dirShift;
-							}
-							to += dirShift;
-							if ((bb & bbToPlay) != 0L) {
-								break;
-							}
-							if ((bb & bbTargets) != 0L) {
-								if (moveIndex == -1) {
-									return 1;
-								}
-								if ((bb & bbNotToPlay) == 0L) {
-									allMoves[moveIndex++] = Move.getRegularMove(from, to, false);
-								} else {
-									allMoves[moveIndex++] = Move.getRegularMove(from, to, true);
-									break;
-								}
-							} else if ((bb & bbNotToPlay) != 0) {
-								break;
-							}
-						}
+			long destSquares = getSlidingAttacks(piece, from, bbAllPieces) & (~bbToPlay) & bbTargets;
+			if (destSquares != 0L) {
+				if ((bbPinned & ofSquare(from)) != 0L) {
+					destSquares &= getPinRay(from, getToPlay());
+				}
+				while (destSquares != 0L) {
+					if (moveIndex == -1) {
+						return 1;
 					}
+					int to = getFirstSqi(destSquares);
+					allMoves[moveIndex++] = Move.getRegularMove(from, to, (ofSquare(to) & bbNotToPlay) != 0L);
+					destSquares &= destSquares - 1;
 				}
 			}
 			bbPieces &= bbPieces - 1;
@@ -2642,7 +3154,7 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		return true;
 	}
 
-	private int getAllPawnMoves(int moveIndex, long bbTargets) {
+	private int getAllPawnMoves(int moveIndex, long bbTargets, long bbPinned) {
 		if (bbTargets == 0L) {
 			return moveIndex;
 		}
@@ -2683,9 +3195,9 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 
 			/*---------- pawn move ----------*/
 			int to = from + DIR_SHIFT[pawnMoveDir];
-			int pinnedDir = getPinnedDirection(from, getToPlay());
+			long bbPinRay = ((bbPinned & ofSquare(from)) != 0L ? getPinRay(from, getToPlay()) : ~0L);
 			if (isSquareEmpty(to)) {
-				if (pinnedDir == NO_DIR || areDirectionsParallel(pinnedDir, pawnMoveDir)) {
+				if ((bbPinRay & ofSquare(to)) != 0L) {
 					long bbTo = ofSquare(to);
 					if (Chess.sqiToRow(to) == eighthRank) {
 						if ((bbTo & bbTargets) != 0L) {
@@ -2726,20 +3238,22 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 
 			while (destSquares != 0L) {
 				to = getFirstSqi(destSquares);
-				int dir = DIR[from][to];
-				if (pinnedDir == NO_DIR || dir == NO_DIR || areDirectionsParallel(pinnedDir, dir)) {
-					if (moveIndex == -1) {
+				if ((bbPinRay & ofSquare(to)) != 0L) {
+					if (to == sqiEP && isSquareEmpty(sqiEP)) {
+						if (!isEnPassantExposingKing(from, to)) {
+							if (moveIndex == -1) {
+								return 1;
+							}
+							allMoves[moveIndex++] = Move.getEPMove(from, to);
+							myEnPassantFlag = true;
+						}
+					} else if (moveIndex == -1) {
 						return 1;
-					}
-					// int piece = getPiece(to);
-					if (Chess.sqiToRow(to) == eighthRank) {
+					} else if (Chess.sqiToRow(to) == eighthRank) {
 						allMoves[moveIndex++] = Move.getPawnMove(from, to, true, Chess.QUEEN);
 						allMoves[moveIndex++] = Move.getPawnMove(from, to, true, Chess.ROOK);
 						allMoves[moveIndex++] = Move.getPawnMove(from, to, true, Chess.BISHOP);
 						allMoves[moveIndex++] = Move.getPawnMove(from, to, true, Chess.KNIGHT);
-					} else if (to == sqiEP && isSquareEmpty(sqiEP)) {
-						allMoves[moveIndex++] = Move.getEPMove(from, to);
-						myEnPassantFlag = true;
 					} else {
 						allMoves[moveIndex++] = Move.getPawnMove(from, to, true, Chess.NO_PIECE);
 					}
@@ -2756,6 +3270,11 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		return getAllMoves(~0L, ~0L);
 	}
 
+	@Override
+	public int getAllMoves(short[] moves) {
+		return getAllMoves(~0L, ~0L, moves);
+	}
+
 	public short[] getAllReCapturingMoves(short lastMove) {
 		if (Move.isValid(lastMove)) {
 			long bbTargets = ofSquare(Move.getToSqi(lastMove));
@@ -2767,26 +3286,74 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 	}
 
 	public short[] getAllCapturingMoves() {
-		long bbTargets = getToPlay() == Chess.WHITE ? myBbBlacks : myBbWhites;
-		// can include sqiEP safely since no pawn can move on sqi if it is set
-		long bbPawnTargets = (getSqiEP() == Chess.NO_SQUARE ? bbTargets : bbTargets | ofSquare(getSqiEP()));
-		return getAllMoves(bbTargets, bbPawnTargets);
+		long bbTargets = getCapturingTargets();
+		return getAllMoves(bbTargets, getCapturingPawnTargets(bbTargets));
+	}
+
+	@Override
+	public int getAllCapturingMoves(short[] moves) {
+		long bbTargets = getCapturingTargets();
+		return getAllMoves(bbTargets, getCapturingPawnTargets(bbTargets), moves);
 	}
 
 	public short[] getAllNonCapturingMoves() {
-		long bbTargets = getToPlay() == Chess.WHITE ? ~myBbBlacks : ~myBbWhites;
+		long bbTargets = getNonCapturingTargets();
+		return getAllMoves(bbTargets, getNonCapturingPawnTargets(bbTargets));
+	}
+
+	@Override
+	public int getAllNonCapturingMoves(short[] moves) {
+		long bbTargets = getNonCapturingTargets();
+		return getAllMoves(bbTargets, getNonCapturingPawnTargets(bbTargets), moves);
+	}
+
+	private long getCapturingTargets() {
+		return getToPlay() == Chess.WHITE ? myBbBlacks : myBbWhites;
+	}
+
+	private long getCapturingPawnTargets(long bbTargets) {
+		// can include sqiEP safely since no pawn can move on sqi if it is set
+		return (getSqiEP() == Chess.NO_SQUARE ? bbTargets : bbTargets | ofSquare(getSqiEP()));
+	}
+
+	private long getNonCapturingTargets() {
+		return getToPlay() == Chess.WHITE ? ~myBbBlacks : ~myBbWhites;
+	}
+
+	private long getNonCapturingPawnTargets(long bbTargets) {
 		// can exclude sqiEP safely since no pawn can move on sqi if it is set
-		long bbPawnTargets = (getSqiEP() == Chess.NO_SQUARE ? bbTargets : bbTargets & (~ofSquare(getSqiEP())));
-		return getAllMoves(bbTargets, bbPawnTargets);
+		return (getSqiEP() == Chess.NO_SQUARE ? bbTargets : bbTargets & (~ofSquare(getSqiEP())));
 	}
 
 	private short[] getAllMoves(long bbTargets, long bbPawnTargets) {
+		int numberOfMoves = generateMoves(bbTargets, bbPawnTargets);
+		if (numberOfMoves == 0) {
+			return new short[0];
+		}
+		short[] onlyTheMoves = new short[numberOfMoves];
+		System.arraycopy(allMoves, 0, onlyTheMoves, 0, numberOfMoves);
+		return onlyTheMoves;
+	}
+
+	private int getAllMoves(long bbTargets, long bbPawnTargets, short[] moves) {
+		int numberOfMoves = generateMoves(bbTargets, bbPawnTargets);
+		System.arraycopy(allMoves, 0, moves, 0, numberOfMoves);
+		return numberOfMoves;
+	}
+
+	/**
+	 * Generates the legal moves to the given targets into the buffer
+	 * <code>allMoves</code>.
+	 *
+	 * @return the number of moves generated
+	 */
+	private int generateMoves(long bbTargets, long bbPawnTargets) {
 		if (PROFILE) {
 			numGetAllMoves++;
 		}
 
 		if (bbTargets == 0L) {
-			return new short[0];
+			return 0;
 		}
 
 		int moveIndex = 0;
@@ -2799,25 +3366,30 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 				attackers = getAllAttackers((getToPlay() == Chess.WHITE ? myWhiteKing : myBlackKing), getNotToPlay(), true);
 				bbTargets &= attackers;
 				bbPawnTargets &= attackers;
-				moveIndex = getAllKnightMoves(moveIndex, bbTargets);
-				moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbBishops & (~myBbRooks) & bbToPlay, Chess.BISHOP);
-				moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbRooks & (~myBbBishops) & bbToPlay, Chess.ROOK);
-				moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbRooks & myBbBishops & bbToPlay, Chess.QUEEN);
-				moveIndex = getAllPawnMoves(moveIndex, bbPawnTargets);
+				long bbPinned = getPinnedPieces(getToPlay());
+				moveIndex = getAllKnightMoves(moveIndex, bbTargets, bbPinned);
+				moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbBishops & (~myBbRooks) & bbToPlay, Chess.BISHOP,
+						bbPinned);
+				moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbRooks & (~myBbBishops) & bbToPlay, Chess.ROOK,
+						bbPinned);
+				moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbRooks & myBbBishops & bbToPlay, Chess.QUEEN,
+						bbPinned);
+				moveIndex = getAllPawnMoves(moveIndex, bbPawnTargets, bbPinned);
 			}
 		} else {
-			moveIndex = getAllKnightMoves(moveIndex, bbTargets);
-			moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbBishops & (~myBbRooks) & bbToPlay, Chess.BISHOP);
-			moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbRooks & (~myBbBishops) & bbToPlay, Chess.ROOK);
-			moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbRooks & myBbBishops & bbToPlay, Chess.QUEEN);
+			long bbPinned = getPinnedPieces(getToPlay());
+			moveIndex = getAllKnightMoves(moveIndex, bbTargets, bbPinned);
+			moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbBishops & (~myBbRooks) & bbToPlay, Chess.BISHOP,
+					bbPinned);
+			moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbRooks & (~myBbBishops) & bbToPlay, Chess.ROOK,
+					bbPinned);
+			moveIndex = getAllSlidingMoves(moveIndex, bbTargets, myBbRooks & myBbBishops & bbToPlay, Chess.QUEEN,
+					bbPinned);
 			moveIndex = getAllKingMoves(moveIndex, bbTargets, true);
-			moveIndex = getAllPawnMoves(moveIndex, bbPawnTargets);
+			moveIndex = getAllPawnMoves(moveIndex, bbPawnTargets, bbPinned);
 		}
 
-		short[] onlyTheMoves = new short[moveIndex];
-		System.arraycopy(allMoves, 0, onlyTheMoves, 0, moveIndex);
-
-		return onlyTheMoves;
+		return moveIndex;
 	}
 
 	private boolean canMove() {
@@ -2838,18 +3410,27 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 					if (isExactlyOneBitSet(attackers)) {
 						attackers = getAllAttackers((getToPlay() == Chess.WHITE ? myWhiteKing : myBlackKing), getNotToPlay(),
 								true);
-						canMove = (getAllKnightMoves(-1, attackers) > 0) || (getAllPawnMoves(-1, attackers) > 0)
-								|| (getAllSlidingMoves(-1, attackers, myBbBishops & (~myBbRooks) & bbToPlay, Chess.BISHOP) > 0)
-								|| (getAllSlidingMoves(-1, attackers, myBbRooks & (~myBbBishops) & bbToPlay, Chess.ROOK) > 0)
-								|| (getAllSlidingMoves(-1, attackers, myBbRooks & myBbBishops & bbToPlay, Chess.QUEEN) > 0);
+						long bbPinned = getPinnedPieces(getToPlay());
+						canMove = (getAllKnightMoves(-1, attackers, bbPinned) > 0)
+								|| (getAllPawnMoves(-1, attackers, bbPinned) > 0)
+								|| (getAllSlidingMoves(-1, attackers, myBbBishops & (~myBbRooks) & bbToPlay, Chess.BISHOP,
+										bbPinned) > 0)
+								|| (getAllSlidingMoves(-1, attackers, myBbRooks & (~myBbBishops) & bbToPlay, Chess.ROOK,
+										bbPinned) > 0)
+								|| (getAllSlidingMoves(-1, attackers, myBbRooks & myBbBishops & bbToPlay, Chess.QUEEN,
+										bbPinned) > 0);
 					}
 				}
 			} else {
 				long bbTargets = ~0L;
-				canMove = (getAllKnightMoves(-1, bbTargets) > 0) || (getAllPawnMoves(-1, bbTargets) > 0)
-						|| (getAllSlidingMoves(-1, bbTargets, myBbBishops & (~myBbRooks) & bbToPlay, Chess.BISHOP) > 0)
-						|| (getAllSlidingMoves(-1, bbTargets, myBbRooks & (~myBbBishops) & bbToPlay, Chess.ROOK) > 0)
-						|| (getAllSlidingMoves(-1, bbTargets, myBbRooks & myBbBishops & bbToPlay, Chess.QUEEN) > 0)
+				long bbPinned = getPinnedPieces(getToPlay());
+				canMove = (getAllKnightMoves(-1, bbTargets, bbPinned) > 0) || (getAllPawnMoves(-1, bbTargets, bbPinned) > 0)
+						|| (getAllSlidingMoves(-1, bbTargets, myBbBishops & (~myBbRooks) & bbToPlay, Chess.BISHOP,
+								bbPinned) > 0)
+						|| (getAllSlidingMoves(-1, bbTargets, myBbRooks & (~myBbBishops) & bbToPlay, Chess.ROOK,
+								bbPinned) > 0)
+						|| (getAllSlidingMoves(-1, bbTargets, myBbRooks & myBbBishops & bbToPlay, Chess.QUEEN,
+								bbPinned) > 0)
 						|| (getAllKingMoves(-1, bbTargets, false) > 0);
 				// don't test castling since it cannot be the only move
 			}
@@ -2859,6 +3440,113 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		}
 	}
 
+	@Override
+	public boolean isLegal(short move) {
+		if (!Move.isValid(move) || Move.isNullMove(move)) {
+			return false;
+		}
+		int kingSqi = (getToPlay() == Chess.WHITE ? myWhiteKing : myBlackKing);
+		if (kingSqi == Chess.NO_SQUARE) {
+			return false;
+		}
+
+		if (Move.isCastle(move) || Move.isCastleChess960(move)) {
+			// the castling conditions are checked by the king move generator
+			if (isCheck()) {
+				return false;
+			}
+			int numberOfMoves = getAllKingMoves(0, ~0L, true);
+			for (int i = 0; i < numberOfMoves; ++i) {
+				if (allMoves[i] == move) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		int from = Move.getFromSqi(move);
+		int to = Move.getToSqi(move);
+		long bbFrom = ofSquare(from);
+		long bbTo = ofSquare(to);
+		long bbToPlay = (getToPlay() == Chess.WHITE ? myBbWhites : myBbBlacks);
+		long bbNotToPlay = (getToPlay() == Chess.WHITE ? myBbBlacks : myBbWhites);
+		long bbAllPieces = myBbWhites | myBbBlacks;
+		if ((bbToPlay & bbFrom) == 0L || (bbToPlay & bbTo) != 0L) {
+			return false;
+		}
+
+		/*---------- pseudo-legality ----------*/
+		int piece = getPiece(from);
+		boolean isEPMove = Move.isEPMove(move);
+		int epPawnSqi = to + (getToPlay() == Chess.WHITE ? -Chess.NUM_OF_COLS : Chess.NUM_OF_COLS);
+		if (isEPMove) {
+			if (piece != Chess.PAWN || to != getSqiEP() || (bbNotToPlay & myBbPawns & ofSquare(epPawnSqi)) == 0L) {
+				return false;
+			}
+		} else if (Move.isCapturing(move) != ((bbNotToPlay & bbTo) != 0L)
+				|| to == (getToPlay() == Chess.WHITE ? myBlackKing : myWhiteKing)) {
+			return false;
+		}
+		if (Move.isPromotion(move) && piece != Chess.PAWN) {
+			return false;
+		}
+
+		switch (piece) {
+		case Chess.PAWN -> {
+			boolean toEighthRank = Chess.sqiToRow(to) == (getToPlay() == Chess.WHITE ? 7 : 0);
+			if (toEighthRank != Move.isPromotion(move)) {
+				return false;
+			}
+			if (Move.isCapturing(move)) {
+				long bbAttacks = (getToPlay() == Chess.WHITE ? WHITE_PAWN_ATTACKS[from] : BLACK_PAWN_ATTACKS[from]);
+				if ((bbAttacks & bbTo) == 0L) {
+					return false;
+				}
+			} else {
+				int step = (getToPlay() == Chess.WHITE ? Chess.NUM_OF_COLS : -Chess.NUM_OF_COLS);
+				int secondRank = (getToPlay() == Chess.WHITE ? 1 : 6);
+				if (to != from + step
+						&& (to != from + 2 * step || Chess.sqiToRow(from) != secondRank || !isSquareEmpty(from + step))) {
+					return false;
+				}
+			}
+		}
+		case Chess.KNIGHT -> {
+			if ((KNIGHT_ATTACKS[from] & bbTo) == 0L) {
+				return false;
+			}
+		}
+		case Chess.BISHOP, Chess.ROOK, Chess.QUEEN -> {
+			if ((getSlidingAttacks(piece, from, bbAllPieces) & bbTo) == 0L) {
+				return false;
+			}
+		}
+		case Chess.KING -> {
+			return (KING_ATTACKS[from] & bbTo) != 0L && !isAttacked(to, getNotToPlay(), bbFrom);
+		}
+		default -> {
+			return false;
+		}
+		}
+
+		/*---------- king safety ----------*/
+		if (isCheck()) {
+			long bbCheckers = getAllAttackers(kingSqi, getNotToPlay(), false);
+			if (!isExactlyOneBitSet(bbCheckers)) {
+				return false;
+			}
+			// capture the checking piece or block the check
+			if ((getAllAttackers(kingSqi, getNotToPlay(), true) & bbTo) == 0L
+					&& !(isEPMove && (bbCheckers & ofSquare(epPawnSqi)) != 0L)) {
+				return false;
+			}
+		}
+		if ((getPinnedPieces(getToPlay()) & bbFrom) != 0L && (getPinRay(from, getToPlay()) & bbTo) == 0L) {
+			return false;
+		}
+		return !isEPMove || !isEnPassantExposingKing(from, to);
+	}
+
 	/*
 	 * =========================================================================
 	 */
@@ -2876,6 +3564,127 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 		return (getToPlay() == Chess.WHITE ? value : -value);
 	}
 
+	/*
+	 * =========================================================================
+	 */
+	// Static exchange evaluation
+
+	// indexed by piece: NO_PIECE, KNIGHT, BISHOP, ROOK, QUEEN, PAWN, KING (values as in getMaterial)
+	private static final int[] SEE_VALUES = { 0, 300, 325, 500, 900, 100, 20000 };
+
+	private final int[] seeGains = new int[40]; // buffer for see, at most 32 pieces can take part
+
+	@Override
+	public int see(short move) {
+		if (!Move.isValid(move) || Move.isCastle(move) || Move.isCastleChess960(move)) {
+			return 0;
+		}
+		return computeSee(move);
+	}
+
+	@Override
+	public boolean seeGE(short move, int threshold) {
+		if (!Move.isValid(move) || Move.isCastle(move) || Move.isCastleChess960(move)) {
+			return 0 >= threshold;
+		}
+		int from = Move.getFromSqi(move);
+		int captured = Move.isEPMove(move) ? Chess.PAWN : getPiece(Move.getToSqi(move));
+		int moved = getPiece(from);
+		int gain = SEE_VALUES[captured];
+		if (Move.isPromotion(move)) {
+			moved = Move.getPromotionPiece(move);
+			gain += SEE_VALUES[moved] - SEE_VALUES[Chess.PAWN];
+		}
+		// the opponent may not recapture, and after a recapture the mover may stop
+		if (gain < threshold) {
+			return false;
+		} else if (gain - SEE_VALUES[moved] >= threshold) {
+			return true;
+		}
+		return computeSee(move) >= threshold;
+	}
+
+	/*
+	 * The swap algorithm: the pieces of both sides capture on the target square in
+	 * the order of increasing value; sliders behind a capturing piece are found by
+	 * recomputing the slider attacks with the reduced occupancy (x-rays). Each side
+	 * may stop capturing when this is better for it. The position is not changed.
+	 * Pins are ignored, but a king never captures a defended piece.
+	 */
+	private int computeSee(short move) {
+		int from = Move.getFromSqi(move);
+		int to = Move.getToSqi(move);
+
+		long bbOccupied = (myBbWhites | myBbBlacks) & ~ofSquare(from);
+		int pieceOnSquare = getPiece(from);
+		int[] gains = seeGains;
+		if (Move.isEPMove(move)) {
+			bbOccupied &= ~ofSquare(Move.getEpCapturedPawnSquare(move));
+			gains[0] = SEE_VALUES[Chess.PAWN];
+		} else {
+			gains[0] = SEE_VALUES[getPiece(to)];
+		}
+		if (Move.isPromotion(move)) {
+			pieceOnSquare = Move.getPromotionPiece(move);
+			gains[0] += SEE_VALUES[pieceOnSquare] - SEE_VALUES[Chess.PAWN];
+		}
+
+		long bbKings = ofSquare(myWhiteKing) | ofSquare(myBlackKing);
+		long bbAttackers = getSeeAttackers(to, bbOccupied, bbKings) & bbOccupied;
+		int color = getNotToPlay();
+		int depth = 0;
+		while (true) {
+			long bbOwn = bbAttackers & (color == Chess.WHITE ? myBbWhites : myBbBlacks);
+			if (bbOwn == 0L) {
+				break;
+			}
+			long bbFrom;
+			int piece;
+			if ((bbOwn & myBbPawns) != 0L) {
+				bbFrom = bbOwn & myBbPawns;
+				piece = Chess.PAWN;
+			} else if ((bbOwn & myBbKnights) != 0L) {
+				bbFrom = bbOwn & myBbKnights;
+				piece = Chess.KNIGHT;
+			} else if ((bbOwn & myBbBishops & ~myBbRooks) != 0L) {
+				bbFrom = bbOwn & myBbBishops & ~myBbRooks;
+				piece = Chess.BISHOP;
+			} else if ((bbOwn & myBbRooks & ~myBbBishops) != 0L) {
+				bbFrom = bbOwn & myBbRooks & ~myBbBishops;
+				piece = Chess.ROOK;
+			} else if ((bbOwn & myBbRooks & myBbBishops) != 0L) {
+				bbFrom = bbOwn & myBbRooks & myBbBishops;
+				piece = Chess.QUEEN;
+			} else {
+				bbFrom = bbOwn & bbKings;
+				piece = Chess.KING;
+				if ((bbAttackers & ~bbOwn) != 0L) {
+					break; // the king cannot capture a defended piece
+				}
+			}
+			++depth;
+			gains[depth] = SEE_VALUES[pieceOnSquare] - gains[depth - 1];
+			bbFrom &= -bbFrom; // the lowest bit, i.e. one piece
+			bbOccupied &= ~bbFrom;
+			bbAttackers = getSeeAttackers(to, bbOccupied, bbKings) & bbOccupied;
+			pieceOnSquare = piece;
+			color = Chess.otherPlayer(color);
+		}
+		// gains[i] is the result of capture i for its side if there is no recapture
+		while (depth > 0) {
+			gains[depth - 1] = -Math.max(-gains[depth - 1], gains[depth]);
+			--depth;
+		}
+		return gains[0];
+	}
+
+	private long getSeeAttackers(int sqi, long bbOccupied, long bbKings) {
+		return (BLACK_PAWN_ATTACKS[sqi] & myBbWhites & myBbPawns) | (WHITE_PAWN_ATTACKS[sqi] & myBbBlacks & myBbPawns)
+				| (KNIGHT_ATTACKS[sqi] & myBbKnights) | (KING_ATTACKS[sqi] & bbKings)
+				| (MagicBitboards.bishopAttacks(sqi, bbOccupied) & myBbBishops)
+				| (MagicBitboards.rookAttacks(sqi, bbOccupied) & myBbRooks);
+	}
+
 	@Override
 	public Variant getVariant() {
 		return myVariant;
@@ -3224,7 +4033,7 @@ public final class PositionImpl extends AbstractMoveablePosition implements Seri
 				targets |= ofSquare(epPawnSqi);
 			}
 			myEnPassantFlag = false;
-			getAllPawnMoves(0, targets);
+			getAllPawnMoves(0, targets, getPinnedPieces(getToPlay()));
 			if (myEnPassantFlag) {
 				return s;
 			} else {
@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.position;
+
+import chesspresso.Chess;
+import chesspresso.move.Move;
+
+/**
+ * A move generator which delivers the legal moves of a position in stages, as
+ * they are needed by alpha-beta searches: first the hash move, then the
+ * captures ordered by MVV/LVA (most valuable victim, least valuable attacker),
+ * then the non-capturing promotions, then the killer moves and finally the
+ * remaining quiet moves. Each stage is generated only when the caller asks for
+ * a move of it: the promotions are generated from the pawns on the seventh rank
+ * and the killer moves are checked for legality on their own, so a search which
+ * is cut off after the captures or promotions (e.g. a quiescence search) never
+ * pays for the generation of the quiet moves.
+ * <p>
+ * Usage: call {@link #init(short, short, short)} for the current position, then
+ * {@link #next()} until it returns {@link Move#NO_MOVE}. The position may be
+ * changed between two calls of next(), but it has to be the same position again
+ * at the next call (i.e. each doMove must be followed by an undoMove). Each
+ * legal move is delivered exactly once.
+ * <p>
+ * This class is not thread-safe; a search uses one generator per ply.
+ *
+ * @author Thomas Niessen
+ */
+public final class StagedMoveGenerator {
+
+	public enum Stage {
+		HASH_MOVE, CAPTURES, PROMOTIONS, KILLERS, QUIETS, DONE
+	}
+
+	// order for MVV/LVA, indexed by piece (NO_PIECE, KNIGHT, BISHOP, ROOK, QUEEN, PAWN, KING)
+	private static final int[] PIECE_ORDER = { 0, 2, 3, 4, 5, 1, 6 };
+
+	private static final int[] PROMOTION_PIECES = { Chess.QUEEN, Chess.ROOK, Chess.BISHOP, Chess.KNIGHT };
+
+	private final MoveablePosition position;
+
+	private final short[] captures = new short[MoveablePosition.MAX_NUMBER_OF_MOVES];
+	private final int[] captureScores = new int[MoveablePosition.MAX_NUMBER_OF_MOVES];
+	private int numOfCaptures;
+	private boolean capturesGenerated;
+
+	// at most eight pawns can promote, each to four pieces
+	private final short[] promotions = new short[Chess.NUM_OF_COLS * PROMOTION_PIECES.length];
+	private int numOfPromotions;
+
+	private final short[] nonCaptures = new short[MoveablePosition.MAX_NUMBER_OF_MOVES];
+	private int numOfNonCaptures;
+	private boolean nonCapturesGenerated;
+
+	private short hashMove;
+	private final short[] killers = new short[2];
+
+	private Stage stage;
+	private int index;
+
+	/*
+	 * =========================================================================
+	 */
+
+	public StagedMoveGenerator(MoveablePosition position) {
+		this.position = position;
+		init();
+	}
+
+	/**
+	 * Prepares the generator for the current position without hash and killer
+	 * moves.
+	 */
+	public void init() {
+		init(Move.NO_MOVE, Move.NO_MOVE, Move.NO_MOVE);
+	}
+
+	/**
+	 * Prepares the generator for the current position.
+	 *
+	 * @param hashMove the move to be tried first, or {@link Move#NO_MOVE}; it is
+	 *                 delivered only if it is legal
+	 * @param killer1  the first killer move, or {@link Move#NO_MOVE}
+	 * @param killer2  the second killer move, or {@link Move#NO_MOVE}; killer
+	 *                 moves are delivered only if they are legal quiet moves
+	 */
+	public void init(short hashMove, short killer1, short killer2) {
+		this.hashMove = hashMove;
+		killers[0] = killer1;
+		killers[1] = (killer2 != killer1 ? killer2 : Move.NO_MOVE);
+		stage = Stage.HASH_MOVE;
+		index = 0;
+		capturesGenerated = false;
+		nonCapturesGenerated = false;
+	}
+
+	/**
+	 * Returns the stage of the move most recently returned by {@link #next()}, or
+	 * {@link Stage#DONE} if all moves are delivered.
+	 */
+	public Stage getStage() {
+		return stage;
+	}
+
+	/**
+	 * Returns the next legal move, or {@link Move#NO_MOVE} if all moves have been
+	 * delivered.
+	 */
+	public short next() {
+		// each exhausted stage prepares the next one, which is then tried in the next iteration
+		for (;;) {
+			switch (stage) {
+			case HASH_MOVE:
+				if (index == 0) {
+					index = 1;
+					if (isLegalHashMove()) {
+						return hashMove;
+					}
+				}
+				stage = Stage.CAPTURES;
+				index = 0;
+				generateCaptures();
+				break;
+			case CAPTURES:
+				while (index < numOfCaptures) {
+					short move = pickBestCapture(index++);
+					if (move != hashMove) {
+						return move;
+					}
+				}
+				stage = Stage.PROMOTIONS;
+				index = 0;
+				generatePromotions();
+				break;
+			case PROMOTIONS:
+				while (index < numOfPromotions) {
+					short move = promotions[index++];
+					if (move != hashMove) {
+						return move;
+					}
+				}
+				stage = Stage.KILLERS;
+				index = 0;
+				break;
+			case KILLERS:
+				while (index < killers.length) {
+					short move = killers[index++];
+					if (isKiller(move)) {
+						return move;
+					}
+				}
+				stage = Stage.QUIETS;
+				index = 0;
+				generateNonCaptures();
+				break;
+			case QUIETS:
+				// killers which were not delivered are no legal quiet moves, so they are not generated either
+				while (index < numOfNonCaptures) {
+					short move = nonCaptures[index++];
+					if (!Move.isPromotion(move) && move != hashMove && move != killers[0] && move != killers[1]) {
+						return move;
+					}
+				}
+				stage = Stage.DONE;
+				break;
+			default:
+				return Move.NO_MOVE;
+			}
+		}
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	private boolean isLegalHashMove() {
+		return Move.isValid(hashMove) && position.isLegal(hashMove);
+	}
+
+	private boolean isKiller(short move) {
+		if (!Move.isValid(move) || move == hashMove || Move.isCapturing(move) || Move.isPromotion(move)) {
+			return false;
+		}
+		return position.isLegal(move);
+	}
+
+	private void generateCaptures() {
+		if (capturesGenerated) {
+			return;
+		}
+		numOfCaptures = position.getAllCapturingMoves(captures);
+		for (int i = 0; i < numOfCaptures; ++i) {
+			short move = captures[i];
+			int victim = Move.isEPMove(move) ? Chess.PAWN : position.getPiece(Move.getToSqi(move));
+			int attacker = position.getPiece(Move.getFromSqi(move));
+			int score = 8 * PIECE_ORDER[victim] - PIECE_ORDER[attacker];
+			if (Move.isPromotion(move)) {
+				score += 8 * PIECE_ORDER[Move.getPromotionPiece(move)];
+			}
+			captureScores[i] = score;
+		}
+		capturesGenerated = true;
+	}
+
+	// the non-capturing promotions in the order queen, rook, bishop, knight
+	private void generatePromotions() {
+		boolean white = position.getToPlay() == Chess.WHITE;
+		int pawn = white ? Chess.WHITE_PAWN : Chess.BLACK_PAWN;
+		int seventhRank = white ? Chess.NUM_OF_ROWS - 2 : 1;
+		int direction = white ? Chess.NUM_OF_COLS : -Chess.NUM_OF_COLS;
+		numOfPromotions = 0;
+		for (int col = 0; col < Chess.NUM_OF_COLS; ++col) {
+			int from = Chess.coorToSqi(col, seventhRank);
+			int to = from + direction;
+			if (position.getStone(from) == pawn && position.getStone(to) == Chess.NO_STONE
+					&& position.isLegal(Move.getPawnMove(from, to, false, Chess.QUEEN))) {
+				for (int piece : PROMOTION_PIECES) {
+					promotions[numOfPromotions++] = Move.getPawnMove(from, to, false, piece);
+				}
+			}
+		}
+	}
+
+	private void generateNonCaptures() {
+		if (nonCapturesGenerated) {
+			return;
+		}
+		numOfNonCaptures = position.getAllNonCapturingMoves(nonCaptures);
+		nonCapturesGenerated = true;
+	}
+
+	// selection sort step: moves the best remaining capture to index i
+	private short pickBestCapture(int i) {
+		int best = i;
+		for (int j = i + 1; j < numOfCaptures; ++j) {
+			if (captureScores[j] > captureScores[best]) {
+				best = j;
+			}
+		}
+		if (best != i) {
+			short move = captures[best];
+			captures[best] = captures[i];
+			captures[i] = move;
+			int score = captureScores[best];
+			captureScores[best] = captureScores[i];
+			captureScores[i] = score;
+		}
+		return captures[i];
+	}
+}
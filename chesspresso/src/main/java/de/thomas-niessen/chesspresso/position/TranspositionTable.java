@@ -0,0 +1,252 @@
+/*******************************************************************************
+ * Copyright (C) 2026 Thomas Niessen. All rights reserved.
+ * 
+ * This library is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation; either version 2.1 of the License, or (at
+ * your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser
+ * General Public License for more details.
+ ******************************************************************************/
+package chesspresso.position;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import chesspresso.move.Move;
+
+/**
+ * A fixed-size transposition table for searches, keyed by the Zobrist hash
+ * codes of positions ({@link ImmutablePosition#getHashCode()}).
+ * 
+ * <p>
+ * The table is stored off-heap in one memory segment of an automatic arena, so
+ * tables of several gigabytes neither box their keys nor burden the garbage
+ * collector, and the memory is freed when the table becomes unreachable. Each
+ * entry takes 16 bytes: the data (move, score, depth, bound and search
+ * generation) packed into one long and the hash code xor the data in a second
+ * long. The table can be shared by several threads without locking: an entry
+ * is only accepted if both parts fit together, so an entry which is written by
+ * two threads at the same time is never mistaken for a valid entry.
+ * 
+ * <p>
+ * Two entries form a bucket. The first entry of a bucket is depth-preferred,
+ * i.e. it is only replaced by an entry with at least the same depth, by an
+ * entry for the same position or if it stems from an earlier search. All other
+ * entries go to the second entry of the bucket, which is always replaced.
+ * 
+ * <p>
+ * {@link #probe(long)} returns the packed data, which is decoded with
+ * {@link #getMove(long)}, {@link #getScore(long)}, {@link #getDepth(long)} and
+ * {@link #getBound(long)}. So no objects are created at all.
+ *
+ * @author Thomas Niessen
+ */
+public final class TranspositionTable {
+
+	/** The stored score is an upper bound (fail-low). */
+	public static final int UPPER_BOUND = 1;
+	/** The stored score is a lower bound (fail-high). */
+	public static final int LOWER_BOUND = 2;
+	/** The stored score is exact. */
+	public static final int EXACT = 3;
+
+	/** The maximal depth which can be stored. */
+	public static final int MAX_DEPTH = 0xFF;
+
+	/** The result of {@link #probe(long)} if there is no entry. */
+	public static final long NO_ENTRY = 0L;
+
+	// data layout: move (16 bits), score (16 bits), depth (8 bits), bound (2 bits), generation (8 bits)
+	private static final int SCORE_SHIFT = 16, DEPTH_SHIFT = 32, BOUND_SHIFT = 40, GENERATION_SHIFT = 42;
+	private static final long GENERATION_MASK = 0xFFL;
+
+	private static final int ENTRY_SIZE = 16, BUCKET_SIZE = 2 * ENTRY_SIZE;
+
+	private final MemorySegment table;
+	private final long bucketMask;
+	private volatile int generation;
+
+	/*
+	 * =========================================================================
+	 */
+
+	/**
+	 * Creates a table of at most the given size (rounded down to a power of two,
+	 * but at least one bucket). Note that the native memory of the table counts
+	 * against <code>-XX:MaxDirectMemorySize</code>, by default the maximal heap
+	 * size.
+	 *
+	 * @param sizeInBytes the maximal size of the table
+	 */
+	public TranspositionTable(long sizeInBytes) {
+		if (sizeInBytes <= 0L) {
+			throw new IllegalArgumentException("TranspositionTable: illegal size " + sizeInBytes);
+		}
+		long numberOfBuckets = Math.max(Long.highestOneBit(sizeInBytes / BUCKET_SIZE), 1L);
+		bucketMask = numberOfBuckets - 1;
+		table = Arena.ofAuto().allocate(numberOfBuckets * BUCKET_SIZE, BUCKET_SIZE); // zeroed
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	/**
+	 * Returns the data stored for a position.
+	 *
+	 * @param hashCode the hash code of the position
+	 * @return the packed data, or {@link #NO_ENTRY}
+	 */
+	public long probe(long hashCode) {
+		long offset = getOffset(hashCode);
+		for (int entry = 0; entry < BUCKET_SIZE; entry += ENTRY_SIZE) {
+			long check = table.get(ValueLayout.JAVA_LONG, offset + entry);
+			long data = table.get(ValueLayout.JAVA_LONG, offset + entry + 8);
+			if (data != NO_ENTRY && (check ^ data) == hashCode) {
+				return data;
+			}
+		}
+		return NO_ENTRY;
+	}
+
+	/**
+	 * Stores the result of a search.
+	 *
+	 * @param hashCode the hash code of the position
+	 * @param move     the best move, may be {@link Move#NO_MOVE}; then a move
+	 *                 stored before for the position is kept
+	 * @param score    the score, between {@link Short#MIN_VALUE} and
+	 *                 {@link Short#MAX_VALUE}
+	 * @param depth    the depth of the search, between 0 and {@link #MAX_DEPTH}
+	 * @param bound    {@link #UPPER_BOUND}, {@link #LOWER_BOUND} or
+	 *                 {@link #EXACT}
+	 */
+	public void store(long hashCode, short move, int score, int depth, int bound) {
+		if (score < Short.MIN_VALUE || score > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("TranspositionTable::store: score out of range " + score);
+		}
+		if (depth < 0 || depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("TranspositionTable::store: depth out of range " + depth);
+		}
+		if (bound < UPPER_BOUND || bound > EXACT) {
+			throw new IllegalArgumentException("TranspositionTable::store: illegal bound " + bound);
+		}
+
+		long offset = getOffset(hashCode);
+		int currentGeneration = generation;
+
+		long check = table.get(ValueLayout.JAVA_LONG, offset);
+		long data = table.get(ValueLayout.JAVA_LONG, offset + 8);
+		boolean samePosition = data != NO_ENTRY && (check ^ data) == hashCode;
+		if (!samePosition && getDepth(data) > depth && getGeneration(data) == currentGeneration) {
+			// the depth-preferred entry is kept, use the always-replace entry
+			offset += ENTRY_SIZE;
+			check = table.get(ValueLayout.JAVA_LONG, offset);
+			data = table.get(ValueLayout.JAVA_LONG, offset + 8);
+			samePosition = data != NO_ENTRY && (check ^ data) == hashCode;
+		}
+		if (move == Move.NO_MOVE && samePosition) {
+			move = getMove(data);
+		}
+
+		long newData = (move & 0xFFFFL) | ((score & 0xFFFFL) << SCORE_SHIFT) | ((long) depth << DEPTH_SHIFT)
+				| ((long) bound << BOUND_SHIFT) | ((currentGeneration & GENERATION_MASK) << GENERATION_SHIFT);
+		table.set(ValueLayout.JAVA_LONG, offset, hashCode ^ newData);
+		table.set(ValueLayout.JAVA_LONG, offset + 8, newData);
+	}
+
+	/**
+	 * Starts a new search. Entries of earlier searches are still found, but they
+	 * are replaced in preference to entries of the current search.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & (int) GENERATION_MASK;
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		table.fill((byte) 0);
+		generation = 0;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public long size() {
+		return 2 * (bucketMask + 1);
+	}
+
+	/**
+	 * Returns the usage of the table in permill, estimated from the first
+	 * thousand entries: the number of entries of the current search.
+	 *
+	 * @return the usage in permill
+	 */
+	public int getHashFull() {
+		int entries = (int) Math.min(size(), 1000L);
+		int used = 0;
+		for (int entry = 0; entry < entries; ++entry) {
+			long data = table.get(ValueLayout.JAVA_LONG, (long) entry * ENTRY_SIZE + 8);
+			if (data != NO_ENTRY && getGeneration(data) == generation) {
+				++used;
+			}
+		}
+		return used * 1000 / entries;
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	/**
+	 * @param data the result of {@link #probe(long)}
+	 * @return the stored move
+	 */
+	public static short getMove(long data) {
+		return (short) data;
+	}
+
+	/**
+	 * @param data the result of {@link #probe(long)}
+	 * @return the stored score
+	 */
+	public static int getScore(long data) {
+		return (short) (data >>> SCORE_SHIFT);
+	}
+
+	/**
+	 * @param data the result of {@link #probe(long)}
+	 * @return the stored depth
+	 */
+	public static int getDepth(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+	}
+
+	/**
+	 * @param data the result of {@link #probe(long)}
+	 * @return the stored bound: {@link #UPPER_BOUND}, {@link #LOWER_BOUND} or
+	 *         {@link #EXACT}
+	 */
+	public static int getBound(long data) {
+		return (int) (data >>> BOUND_SHIFT) & 3;
+	}
+
+	private static int getGeneration(long data) {
+		return (int) ((data >>> GENERATION_SHIFT) & GENERATION_MASK);
+	}
+
+	/*
+	 * =========================================================================
+	 */
+
+	private long getOffset(long hashCode) {
+		return (AbstractPosition.mixHashCode(hashCode) & bucketMask) * BUCKET_SIZE;
+	}
+}